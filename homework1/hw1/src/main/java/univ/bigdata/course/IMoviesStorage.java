@@ -75,9 +75,9 @@ public interface IMoviesStorage {
 
     /**
      * Computes most popular movie which has been reviewed by at least
-     * numOfUsers (provided as parameter).
+     * numOfUsers (provided as parameter) distinct users.
      *
-     * @param numOfUsers - limit of minimum users which reviewed the movie
+     * @param numOfUsers - limit of minimum distinct users which reviewed the movie
      * @return - movie which got highest count of reviews
      */
     String mostPopularMovieReviewedByKUsers(final int numOfUsers);
@@ -6,110 +6,271 @@
  */
 package univ.bigdata.course;
 
+import univ.bigdata.course.external.ExternalAggregation;
+import univ.bigdata.course.output.ChannelWriter;
+import univ.bigdata.course.output.OutputFormat;
+import univ.bigdata.course.output.ResultWriter;
+import univ.bigdata.course.partition.PartitionedMoviesStorage;
+import univ.bigdata.course.plan.Explain;
+import univ.bigdata.course.plan.PlannedMoviesStorage;
+import univ.bigdata.course.plan.QueryHint;
+import univ.bigdata.course.providers.CompositeMoviesProvider;
 import univ.bigdata.course.providers.FileIOMoviesProvider;
 import univ.bigdata.course.providers.MoviesProvider;
+import univ.bigdata.course.providers.PipelinedMoviesProvider;
+import univ.bigdata.course.providers.ShardStatistics;
+import univ.bigdata.course.segment.SegmentWriter;
+import univ.bigdata.course.segment.SegmentedMoviesStorage;
 
-import java.io.FileOutputStream;
-import java.io.PrintStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class MoviesReviewsQueryRunner {
 
     public static void main(String[] args) {
 
-        //TODO: Here you need to add the part of reading input parameters
-        // opening stream for writing the output and validating.
-
-        
         try{
         	//assuming the files name are in the right order and exist, with normal character
-        	final PrintStream printer = new PrintStream(new FileOutputStream(args[1].split("=")[1]));
-            final MoviesProvider provider = new FileIOMoviesProvider("target/classes/"+args[0].split("=")[1]);
-            final IMoviesStorage storage = new MoviesStorage(provider);
-
-            printer.println("Getting list of total movies average.");
-            // 1.
-            printer.println();
-            printer.println("TOP2.");
-            storage.getTopKMoviesAverage(2).stream().forEach(printer::println);
-            printer.println();
-            printer.println("TOP4.");
-            storage.getTopKMoviesAverage(4).stream().forEach(printer::println);
-
-            // 2.
-            printer.println("Total average: " + storage.totalMoviesAverageScore());
-
-            // 3.
-            printer.println();
-            printer.println("The movie with highest average:  " + storage.movieWithHighestAverage());
-
-            // 4.
-            printer.println();
-            storage.reviewCountPerMovieTopKMovies(4)
-                    .entrySet()
-                    .stream()
-                    .forEach(pair -> printer.println("Movie product id = [" + pair.getKey() + "], reviews count [" + pair.getValue() + "]."));
-
-            // 5.
-            printer.println();
-            printer.println("The most reviewed movie product id is " + storage.mostReviewedProduct());
-
-            // 6.
-            printer.println();
-            printer.println("Computing 90th percentile of all movies average.");
-            storage.getMoviesPercentile(90).stream().forEach(printer::println);
-
-            printer.println();
-            printer.println("Computing 50th percentile of all movies average.");
-            storage.getMoviesPercentile(50).stream().forEach(printer::println);
-
-            // 7.
-            printer.println();
-            printer.println("Computing TOP100 words count");
-            storage.moviesReviewWordsCount(100)
-                    .entrySet()
-                    .forEach(pair -> printer.println("Word = [" + pair.getKey() + "], number of occurrences [" + pair.getValue() + "]."));
-
-            // 8.
-            printer.println();
-            printer.println("Computing TOP100 words count for TOP100 movies");
-            storage.topYMoviewsReviewTopXWordsCount(100, 100)
-                    .entrySet()
-                    .forEach(pair -> printer.println("Word = [" + pair.getKey() + "], number of occurrences [" + pair.getValue() + "]."));
-
-            printer.println("Computing TOP100 words count for TOP10 movies");
-            storage.topYMoviewsReviewTopXWordsCount(100, 10)
-                    .entrySet()
-                    .forEach(pair -> printer.println("Word = [" + pair.getKey() + "], number of occurrences [" + pair.getValue() + "]."));
-
-            // 9.
-            printer.println();
-            printer.println("Most popular movie with highest average score, reviewed by at least 20 users " + storage.mostPopularMovieReviewedByKUsers(20));
-            printer.println("Most popular movie with highest average score, reviewed by at least 15 users " + storage.mostPopularMovieReviewedByKUsers(15));
-            printer.println("Most popular movie with highest average score, reviewed by at least 10 users " + storage.mostPopularMovieReviewedByKUsers(10));
-            printer.println("Most popular movie with highest average score, reviewed by at least 5 users " + storage.mostPopularMovieReviewedByKUsers(5));
-
-            // 10.
-            printer.println();
-            printer.println("Compute top 10 most helpful users.");
-            storage.topKHelpfullUsers(10)
-                    .entrySet()
-                    .forEach(pair -> printer.println("User id = [" + pair.getKey() + "], helpfulness [" + pair.getValue() + "]."));
-
-            printer.println();
-            printer.println("Compute top 100 most helpful users.");
-            storage.topKHelpfullUsers(100)
-                    .entrySet()
-                    .forEach(pair -> printer.println("User id = [" + pair.getKey() + "], helpfulness [" + pair.getValue() + "]."));
-
-            // 11.
-            printer.println();
-            printer.println("Total number of distinct movies reviewed [" +storage.moviesCount() + "].");
-            printer.println("THE END.");
-            //add close for clean exit
-            printer.close();
+            final Map<String, String> options = parseOptions(args);
+            // closing the printer flushes whatever was written, also when a query fails
+            try (final ResultWriter printer = OutputFormat.of(options.get("outputFormat"))
+                    .open(ChannelWriter.open(args[1].split("=")[1]))) {
+                final String input = resolveInput(args[0].split("=")[1]);
+                final MoviesProvider provider = createProvider(input, options);
+                final IMoviesStorage storage = createStorage(provider, input, options);
+                try {
+                    if (provider instanceof CompositeMoviesProvider && options.containsKey("shardStats")) {
+                        final List<String> lines = new ArrayList<>();
+                        for (ShardStatistics shard : ((CompositeMoviesProvider) provider).shardStatistics()) {
+                            lines.add(shard.toString());
+                        }
+                        Files.write(Paths.get(options.get("shardStats")), lines);
+                    }
+
+                    printer.message("Getting list of total movies average.");
+                    // 1.
+                    printer.message("");
+                    printer.message("TOP2.");
+                    printer.movies("TOP2.", storage.getTopKMoviesAverage(2));
+                    printer.message("");
+                    printer.message("TOP4.");
+                    printer.movies("TOP4.", storage.getTopKMoviesAverage(4));
+
+                    // 2.
+                    printer.value("Total average: ", storage.totalMoviesAverageScore(), "");
+
+                    // 3.
+                    printer.message("");
+                    printer.value("The movie with highest average:  ", storage.movieWithHighestAverage(), "");
+
+                    // 4.
+                    printer.message("");
+                    printer.entries("Reviews count of TOP4 movies", "Movie product id", "reviews count", storage.reviewCountPerMovieTopKMovies(4));
+
+                    // 5.
+                    printer.message("");
+                    printer.value("The most reviewed movie product id is ", storage.mostReviewedProduct(), "");
+
+                    // 6.
+                    printer.message("");
+                    printer.message("Computing 90th percentile of all movies average.");
+                    printer.movies("Computing 90th percentile of all movies average.", storage.getMoviesPercentile(90));
+
+                    printer.message("");
+                    printer.message("Computing 50th percentile of all movies average.");
+                    printer.movies("Computing 50th percentile of all movies average.", storage.getMoviesPercentile(50));
+
+                    // 7.
+                    printer.message("");
+                    printer.message("Computing TOP100 words count");
+                    printer.entries("Computing TOP100 words count", "Word", "number of occurrences", storage.moviesReviewWordsCount(100));
+
+                    // 8.
+                    printer.message("");
+                    printer.message("Computing TOP100 words count for TOP100 movies");
+                    printer.entries("Computing TOP100 words count for TOP100 movies", "Word", "number of occurrences",
+                            storage.topYMoviewsReviewTopXWordsCount(100, 100));
+
+                    printer.message("Computing TOP100 words count for TOP10 movies");
+                    printer.entries("Computing TOP100 words count for TOP10 movies", "Word", "number of occurrences",
+                            storage.topYMoviewsReviewTopXWordsCount(100, 10));
+
+                    // 9.
+                    printer.message("");
+                    printer.value("Most popular movie with highest average score, reviewed by at least 20 users ", storage.mostPopularMovieReviewedByKUsers(20), "");
+                    printer.value("Most popular movie with highest average score, reviewed by at least 15 users ", storage.mostPopularMovieReviewedByKUsers(15), "");
+                    printer.value("Most popular movie with highest average score, reviewed by at least 10 users ", storage.mostPopularMovieReviewedByKUsers(10), "");
+                    printer.value("Most popular movie with highest average score, reviewed by at least 5 users ", storage.mostPopularMovieReviewedByKUsers(5), "");
+
+                    // 10.
+                    printer.message("");
+                    printer.message("Compute top 10 most helpful users.");
+                    printer.entries("Compute top 10 most helpful users.", "User id", "helpfulness", storage.topKHelpfullUsers(10));
+
+                    printer.message("");
+                    printer.message("Compute top 100 most helpful users.");
+                    printer.entries("Compute top 100 most helpful users.", "User id", "helpfulness", storage.topKHelpfullUsers(100));
+
+                    // 11.
+                    printer.message("");
+                    printer.value("Total number of distinct movies reviewed [", storage.moviesCount(), "].");
+                    printer.message("THE END.");
+                    if (storage instanceof PlannedMoviesStorage && options.containsKey("explain")) {
+                        final List<String> lines = new ArrayList<>();
+                        for (Explain explain : ((PlannedMoviesStorage) storage).planner().explains()) {
+                            lines.add(explain.toString());
+                        }
+                        Files.write(Paths.get(options.get("explain")), lines);
+                    }
+                } finally {
+                    close(storage);
+                }
+            }
         } catch (final Exception e) {
             e.printStackTrace();
         }
 
     }
+
+    // storages which hold workers, threads or files are closed after the queries
+    private static void close(IMoviesStorage storage) throws Exception {
+        if (storage instanceof AutoCloseable) {
+            ((AutoCloseable) storage).close();
+        }
+    }
+
+    /**
+     * Optional parameters, given after the input and output files in the
+     * form of -name=value. -outputFormat=text|csv|json selects the output format.
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (int i = 2; i < args.length; i++) {
+            final String[] option = args[i].split("=", 2);
+            options.put(option[0].replaceFirst("^-", ""), (option.length > 1) ? option[1] : "");
+        }
+        return options;
+    }
+
+    /**
+     * -parsers=N reads the input by a reader thread and N parser threads, the
+     * input file "-" is the standard input and files ending with .gz are decompressed.
+     * An input directory or glob pattern is read as shards, by up to -readers=N
+     * shard readers at once (default number of processors).
+     */
+    private static MoviesProvider createProvider(String input, Map<String, String> options) throws IOException {
+        if (new File(input).isDirectory() || CompositeMoviesProvider.isGlob(input)) {
+            return new CompositeMoviesProvider(CompositeMoviesProvider.shardsOf(input), Integer.parseInt(
+                    options.getOrDefault("readers", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+        }
+        if (!options.containsKey("parsers")) {
+            return new FileIOMoviesProvider(input);
+        }
+        return PipelinedMoviesProvider.open(input, Integer.parseInt(options.get("parsers")));
+    }
+
+    /**
+     * The input is looked up as given, and when nothing is found there under
+     * target/classes/, where the input of the assignment is kept.
+     */
+    private static String resolveInput(String inputFile) throws IOException {
+        if ("-".equals(inputFile) || new File(inputFile).exists()
+                || (CompositeMoviesProvider.isGlob(inputFile) && !CompositeMoviesProvider.shardsOf(inputFile).isEmpty())) {
+            return inputFile;
+        }
+        return "target/classes/" + inputFile;
+    }
+
+    // files the input is read from, none for the standard input
+    private static List<File> sourcesOf(String input) throws IOException {
+        if ("-".equals(input)) {
+            return Collections.emptyList();
+        }
+        if (new File(input).isDirectory() || CompositeMoviesProvider.isGlob(input)) {
+            return CompositeMoviesProvider.shardsOf(input);
+        }
+        return Collections.singletonList(new File(input));
+    }
+
+    /**
+     * -partitions=N shards the reviews into N partitions, with -workers=jvm each
+     * partition lives in its own worker JVM (options of the worker JVMs can be
+     * given by -workerJvmOptions, separated by spaces). -aggregationBudget=SIZE (at least 1m) limits the
+     * memory of the large aggregations, spilling to -spillDir (default temporary directory).
+     * -segmentDir=DIR writes the reviews into sorted segment files in DIR and queries them
+     * from disk, with -segmentReviews=N reviews per segment. Segments written from the same,
+     * unchanged input with the same settings are reused, unless -rewriteSegments is given. -planner chooses the
+     * plan of every query by its cost, accepting -accuracy=R relative error (default exact) and
+     * preferring plans within -latencyBudget=MICROS, sampling -sampleRate=R of the reviews for
+     * approximate plans and writing the chosen plans to -explain=FILE, it can't be combined with
+     * -aggregationBudget. -backgroundIndexes=N builds the aggregate indexes by N background
+     * threads while the queries scan.
+     */
+    private static IMoviesStorage createStorage(MoviesProvider provider, String input, Map<String, String> options) throws Exception {
+        if (options.containsKey("segmentDir")) {
+            final String spillDir = options.get("spillDir");
+            final ExternalAggregation aggregation = new ExternalAggregation(
+                    parseSize(options.getOrDefault("aggregationBudget", "64m")), (spillDir == null) ? null : new File(spillDir));
+            final File segmentDir = new File(options.get("segmentDir"));
+            final SegmentWriter writer = new SegmentWriter(segmentDir,
+                    Integer.parseInt(options.getOrDefault("segmentReviews", String.valueOf(SegmentWriter.DEFAULT_REVIEWS_PER_SEGMENT))),
+                    SegmentWriter.DEFAULT_BLOCK_REVIEWS);
+            final List<File> sources = sourcesOf(input);
+            if (options.containsKey("rewriteSegments") || !writer.isUpToDate(sources)) {
+                writer.write(provider, sources);
+            } else if (provider instanceof AutoCloseable) {
+                // the segments hold the reviews already, stop reading them
+                ((AutoCloseable) provider).close();
+            }
+            return SegmentedMoviesStorage.open(segmentDir, aggregation);
+        }
+        if (!options.containsKey("partitions")) {
+            final MoviesStorage storage = new MoviesStorage(provider);
+            if (options.containsKey("backgroundIndexes")) {
+                storage.enableBackgroundIndexing(Integer.parseInt(options.get("backgroundIndexes")));
+            }
+            if (options.containsKey("planner")) {
+                if (options.containsKey("aggregationBudget")) {
+                    // the planned queries aggregate in memory, the budget would be silently ignored
+                    throw new IllegalArgumentException("-aggregationBudget can't be combined with -planner");
+                }
+                if (options.containsKey("sampleRate")) {
+                    storage.enableSampling(Double.parseDouble(options.get("sampleRate")), 0);
+                }
+                final QueryHint hint = new QueryHint(Double.parseDouble(options.getOrDefault("accuracy", "0")),
+                        Long.parseLong(options.getOrDefault("latencyBudget", String.valueOf(QueryHint.NO_LATENCY_BUDGET))));
+                return new PlannedMoviesStorage(storage).using(hint);
+            }
+            if (options.containsKey("aggregationBudget")) {
+                final String spillDir = options.get("spillDir");
+                storage.setExternalAggregation(new ExternalAggregation(parseSize(options.get("aggregationBudget")),
+                        (spillDir == null) ? null : new File(spillDir)));
+            }
+            return storage;
+        }
+        final int partitions = Integer.parseInt(options.get("partitions"));
+        if ("jvm".equals(options.get("workers"))) {
+            final String jvmOptions = options.getOrDefault("workerJvmOptions", "").trim();
+            return PartitionedMoviesStorage.remote(provider, partitions,
+                    jvmOptions.isEmpty() ? new String[0] : jvmOptions.split("\\s+"));
+        }
+        return PartitionedMoviesStorage.local(provider, partitions);
+    }
+
+    /**
+     * Parses size in bytes, with optional k, m or g suffix.
+     */
+    private static long parseSize(String size) {
+        final String value = size.trim().toLowerCase();
+        final char unit = value.charAt(value.length() - 1);
+        final long multiplier = (unit == 'k') ? 1L << 10 : (unit == 'm') ? 1L << 20 : (unit == 'g') ? 1L << 30 : 1;
+        return Long.parseLong((multiplier == 1) ? value : value.substring(0, value.length() - 1)) * multiplier;
+    }
 }
@@ -6,11 +6,28 @@
  */
 package univ.bigdata.course;
 
+import univ.bigdata.course.approx.ApproximateQueries;
+import univ.bigdata.course.approx.ReviewSample;
+import univ.bigdata.course.cache.Ranking;
+import univ.bigdata.course.cache.ResultCache;
+import univ.bigdata.course.column.ScoreColumns;
+import univ.bigdata.course.external.ExternalAggregation;
+import univ.bigdata.course.index.IndexKind;
+import univ.bigdata.course.index.IndexManager;
+import univ.bigdata.course.index.InvertedIndex;
+import univ.bigdata.course.index.ReviewerIndex;
+import univ.bigdata.course.index.UserVotes;
+import univ.bigdata.course.index.WordCounts;
 import univ.bigdata.course.movie.Movie;
 import univ.bigdata.course.movie.MovieReview;
+import univ.bigdata.course.output.ScoreFormat;
+import univ.bigdata.course.partition.ScoreStats;
+import univ.bigdata.course.plan.DataStatistics;
 import univ.bigdata.course.providers.MoviesProvider;
+import univ.bigdata.course.recommend.CoReviewEngine;
+import univ.bigdata.course.recommend.CoReviewMatrix;
 
-import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -21,7 +38,13 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
 
 /**
  * Main class which capable to keep all information regarding movies review. Has
@@ -36,8 +59,45 @@ import java.util.TreeMap;
  */
 public class MoviesStorage implements IMoviesStorage {
 	private LinkedList<MovieReview> movieReviews = new LinkedList<MovieReview>();
-	private final DecimalFormat df = new DecimalFormat("#.#####");
+	// when set, aggregations which may not fit into memory are spilled to disk
+	private volatile ExternalAggregation externalAggregation = null;
+	// built on first use, dropped whenever reviews are added
+	private CoReviewEngine coReviewEngine = null;
+	private InvertedIndex textIndex = null;
+	private ScoreColumns scoreColumns = null;
+	private ReviewerIndex reviewerIndex = null;
+	// kept up to date on ingestion, when sampling is enabled
+	private ReviewSample sample = null;
+	// incremented on every ingestion, identifies the data the statistics were computed on
+	private long version = 0;
+	private DataStatistics statistics = null;
+	// when set, the aggregate indexes are built in the background and queries scan until they are ready
+	private IndexManager indexManager = null;
+	// results of the queries on the current version, null to compute every query again
+	private ResultCache resultCache = new ResultCache();
+
+	/**
+	 * Order of movies by average score in decreasing order, in case of same
+	 * average by natural order of product id.
+	 */
+	public static final Comparator<Movie> AVERAGE_ORDER = new Comparator<Movie>() {
+		@Override
+		public int compare(Movie arg0, Movie arg1) {
+			double score0 = arg0.getScore();
+			double score1 = arg1.getScore();
+			if (score0 == score1) {
+				// according to the description, in such case we need to
+				// sort lexicographically by productId
+				return arg0.getProductId().compareTo(arg1.getProductId());
+			}
+			return ((score0 > score1) ? -1 : 1);
+		}
+	};
 
+	private static final Pattern WORD_SEPARATOR = Pattern.compile("\\s");
+
+	public MoviesStorage() {
+	}
 
 	public MoviesStorage(final MoviesProvider provider) {
 		while (provider.hasMovie()) {
@@ -46,64 +106,290 @@ public class MoviesStorage implements IMoviesStorage {
 		}
 	}
 
-	@Override
-	public double totalMoviesAverageScore() {
-		double sum = 0.0;
-		for (MovieReview mr : movieReviews) {
-			sum += mr.getMovie().getScore();
+	public synchronized void addReview(MovieReview mr) {
+		movieReviews.add(mr);
+		version++;
+		statistics = null;
+		if (resultCache != null) {
+			resultCache.invalidate();
+		}
+		if (indexManager != null) {
+			indexManager.invalidate();
+		}
+		coReviewEngine = null;
+		textIndex = null;
+		scoreColumns = null;
+		reviewerIndex = null;
+		if (sample != null) {
+			sample.offer(mr);
 		}
-		return sum / movieReviews.size();
 	}
 
-	@Override
-	public double totalMovieAverage(String productId) {
-		double sum = 0.0;
-		int numRelevant = 0;
-		for (MovieReview mr : movieReviews) {
-			if (mr.getMovie().getProductId().equals(productId)) {
-				sum += mr.getMovie().getScore();
-				numRelevant++;
+	/**
+	 * Starts building the per movie, per user and words count indexes on
+	 * background threads, in order of the queries which need them. Until an
+	 * index is ready its queries scan the reviews, with the same results.
+	 *
+	 * @param threads - number of indexes built at once
+	 */
+	public synchronized void enableBackgroundIndexing(int threads) {
+		if (indexManager != null) {
+			indexManager.close();
+		}
+		indexManager = new IndexManager(this::snapshot, threads);
+		indexManager.register(IndexKind.MOVIE_SCORES, ScoreColumns::new);
+		indexManager.register(IndexKind.MOVIE_REVIEWERS, ReviewerIndex::new);
+		indexManager.register(IndexKind.USER_VOTES, UserVotes::new);
+		indexManager.register(IndexKind.WORD_COUNTS, WordCounts::new);
+	}
+
+	/**
+	 * @return - the background indexes manager, null when background indexing is not enabled
+	 */
+	public synchronized IndexManager indexManager() {
+		return indexManager;
+	}
+
+	private synchronized List<MovieReview> snapshot() {
+		return new ArrayList<MovieReview>(movieReviews);
+	}
+
+	// the index to answer a query with: built on first use, or when built in
+	// the background the ready index, null when the query has to scan
+	private <T> T indexForQuery(IndexKind kind, Supplier<T> onFirstUse) {
+		IndexManager manager;
+		synchronized (this) {
+			manager = indexManager;
+		}
+		return (manager == null) ? onFirstUse.get() : manager.<T>get(kind);
+	}
+
+	/**
+	 * Replaces the cache of the queries results, null to disable caching.
+	 */
+	public synchronized void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	public synchronized ResultCache resultCache() {
+		return resultCache;
+	}
+
+	// result of the query on the current version, computed when not cached
+	private <T> T cached(String query, Supplier<T> compute) {
+		return cached(query, compute, result -> 1);
+	}
+
+	private <T> T cached(String query, Supplier<T> compute, ToLongFunction<T> weight) {
+		ResultCache cache;
+		long currentVersion;
+		synchronized (this) {
+			cache = resultCache;
+			currentVersion = version;
+		}
+		if (cache == null) {
+			return compute.get();
+		}
+		T result = cache.get(query, currentVersion);
+		if (result == null) {
+			result = compute.get();
+			if (result != null) {
+				cache.put(query, currentVersion, result, weight.applyAsLong(result));
 			}
 		}
-		return sum / numRelevant;
+		return result;
 	}
 
-	// Utility function
-	private String[] getAllMovieProductIds() {
-		HashSet<String> uniqueProductIds = new HashSet<String>();
+	// ranking of the query on the current version, computed for top k when the cached one doesn't cover k
+	private <T> Ranking<T> cachedRanking(String query, long k, LongFunction<Ranking<T>> compute) {
+		ResultCache cache;
+		long currentVersion;
+		synchronized (this) {
+			cache = resultCache;
+			currentVersion = version;
+		}
+		if (cache == null) {
+			return compute.apply(k);
+		}
+		Ranking<T> ranking = cache.get(query, currentVersion);
+		if (ranking == null || !ranking.covers(k)) {
+			ranking = compute.apply(k);
+			cache.put(query, currentVersion, ranking, ranking.size());
+		}
+		return ranking;
+	}
+
+	/**
+	 * Starts keeping a sample of the reviews for approximate queries, the
+	 * reviews already stored are sampled right away.
+	 *
+	 * @param rate - probability of every review to be sampled, in (0..1]
+	 */
+	public synchronized void enableSampling(double rate, long seed) {
+		sample = new ReviewSample(rate, seed);
 		for (MovieReview mr : movieReviews) {
-			uniqueProductIds.add(mr.getMovie().getProductId());
+			sample.offer(mr);
+		}
+	}
+
+	/**
+	 * @return - approximate execution of the queries over the sample, with the default confidence
+	 */
+	public synchronized ApproximateQueries approximate() {
+		if (sample == null) {
+			throw new IllegalStateException("Sampling is not enabled");
+		}
+		return new ApproximateQueries(sample);
+	}
+
+	/**
+	 * @see ApproximateQueries#ApproximateQueries(ReviewSample, double, long)
+	 */
+	public synchronized ApproximateQueries approximate(double confidence, long minSamplesPerMovie) {
+		if (sample == null) {
+			throw new IllegalStateException("Sampling is not enabled");
+		}
+		return new ApproximateQueries(sample, confidence, minSamplesPerMovie);
+	}
+
+	/**
+	 * @return - "also reviewed" recommendations engine over the current reviews
+	 */
+	public synchronized CoReviewEngine coReviews() {
+		if (coReviewEngine == null) {
+			coReviewEngine = new CoReviewEngine(CoReviewMatrix.build(movieReviews));
+		}
+		return coReviewEngine;
+	}
+
+	/**
+	 * @return - full text index of the current reviews text and summary
+	 */
+	public synchronized InvertedIndex textIndex() {
+		if (textIndex == null) {
+			textIndex = new InvertedIndex(movieReviews);
+		}
+		return textIndex;
+	}
+
+	/**
+	 * @return - columnar copy of the current reviews scores, used by the score aggregations
+	 */
+	public synchronized ScoreColumns scoreColumns() {
+		if (scoreColumns == null) {
+			scoreColumns = new ScoreColumns(movieReviews);
+		}
+		return scoreColumns;
+	}
+
+	/**
+	 * @return - bitmaps of the distinct users who reviewed each movie
+	 */
+	public synchronized ReviewerIndex reviewerIndex() {
+		if (reviewerIndex == null) {
+			reviewerIndex = new ReviewerIndex(movieReviews);
 		}
+		return reviewerIndex;
+	}
+
+	public synchronized long version() {
+		return version;
+	}
+
+	public synchronized boolean hasScoreColumns() {
+		return scoreColumns != null || (indexManager != null && indexManager.isReady(IndexKind.MOVIE_SCORES));
+	}
+
+	public synchronized boolean hasReviewerIndex() {
+		return reviewerIndex != null || (indexManager != null && indexManager.isReady(IndexKind.MOVIE_REVIEWERS));
+	}
+
+	public synchronized boolean hasTextIndex() {
+		return textIndex != null;
+	}
 
-		return uniqueProductIds.toArray(new String[uniqueProductIds.size()]);
+	public synchronized boolean isSamplingEnabled() {
+		return sample != null;
+	}
+
+	/**
+	 * @return - statistics of the current reviews, gathered by a single pass
+	 * over them and kept until reviews are added, the words are counted only
+	 * when a plan needs them
+	 */
+	public synchronized DataStatistics statistics() {
+		if (statistics == null) {
+			Set<String> movies = new HashSet<String>();
+			Set<String> users = new HashSet<String>();
+			for (MovieReview mr : movieReviews) {
+				movies.add(mr.getMovie().getProductId());
+				users.add(mr.getUserId());
+			}
+			statistics = new DataStatistics(version, movieReviews.size(), movies.size(), users.size(),
+					this::countWords, (sample == null) ? 0 : sample.sampleSize(), (sample == null) ? 0 : sample.rate());
+		}
+		return statistics;
+	}
+
+	// {vocabulary size, words} of the reviews text, by the words count index when it is ready
+	private long[] countWords() {
+		long words = 0;
+		WordCounts wordCounts = indexForQuery(IndexKind.WORD_COUNTS, () -> null);
+		if (wordCounts != null) {
+			Map<String, Long> counts = wordCounts.wordsCount(null);
+			for (long count : counts.values()) {
+				words += count;
+			}
+			return new long[] {counts.size(), words};
+		}
+		Set<String> vocabulary = new HashSet<String>();
+		// a copy, so the storage is not locked while the text is split
+		for (MovieReview mr : snapshot()) {
+			for (String word : words(mr.getReview())) {
+				vocabulary.add(word);
+				words++;
+			}
+		}
+		return new long[] {vocabulary.size(), words};
+	}
+
+	/**
+	 * Executes the word counts, per movie counts and per user helpfulness
+	 * aggregations in external memory, null to execute them in memory again.
+	 * Only the state of the aggregations is kept out of the heap, the reviews
+	 * themselves stay in memory and are streamed through the aggregations.
+	 */
+	public void setExternalAggregation(ExternalAggregation externalAggregation) {
+		this.externalAggregation = externalAggregation;
+	}
+
+	// streams the stored reviews through the aggregation without copying them,
+	// reviews are added once it finishes
+	private synchronized <T> T aggregateReviews(Function<Iterable<MovieReview>, T> aggregation) {
+		return aggregation.apply(movieReviews);
+	}
+
+	@Override
+	public double totalMoviesAverageScore() {
+		return cached("totalMoviesAverageScore", () -> totalScoreStats().average());
+	}
+
+	@Override
+	public double totalMovieAverage(String productId) {
+		return cached("totalMovieAverage:" + productId, () -> movieScoreStats(productId).average());
 	}
 
 	@Override
 	public List<Movie> getTopKMoviesAverage(long topK) {
-		String[] allMovieProductIds = getAllMovieProductIds();
-		Movie sortedMovies[] = new Movie[allMovieProductIds.length];
-		for (int i = 0; i < allMovieProductIds.length; i++) {
-			String movieProductId = allMovieProductIds[i];
-			sortedMovies[i] = new Movie(movieProductId, totalMovieAverage(movieProductId));
-		}
-		// Sorting the array, comparing the movies by their score
-		Arrays.sort(sortedMovies, new Comparator<Movie>() {
-			@Override
-			public int compare(Movie arg0, Movie arg1) {
-				double score0 = arg0.getScore();
-				double score1 = arg1.getScore();
-				if (score0 == score1) {
-					// according to the description, in such case we need to
-					// sort lexicographically by productId
-					return arg0.getProductId().compareTo(arg1.getProductId());
-				}
-				return ((score0 > score1) ? -1 : 1);
-			}
-		});
+		final ExternalAggregation external = externalAggregation;
+		Ranking<Movie> sortedMovies = cachedRanking("topKMoviesAverage", topK, k -> (external != null)
+				? Ranking.top(aggregateReviews(reviews -> external.topKMoviesAverage(reviews, k)), k)
+				: Ranking.complete(Arrays.asList(rankByAverage(movieScoreStats()))));
 		List<Movie> topKMovies = new LinkedList<Movie>();
 		for (int i = 0; i < topK; i++) {
-			sortedMovies[i].setScore(Double.parseDouble(df.format(sortedMovies[i].getScore())));
-			topKMovies.add(sortedMovies[i]);
+			// the cached ranking keeps the averages not rounded
+			Movie movie = sortedMovies.items().get(i);
+			topKMovies.add(new Movie(movie.getProductId(), ScoreFormat.round(movie.getScore())));
 		}
 
 		return topKMovies;
@@ -119,113 +405,358 @@ public class MoviesStorage implements IMoviesStorage {
 
 	@Override
 	public List<Movie> getMoviesPercentile(double percentile) {
-		percentile /= 100.0;
-		String[] allMovieProductIds = getAllMovieProductIds();
-		Movie sortedMovies[] = new Movie[allMovieProductIds.length];
-		for (int i = 0; i < allMovieProductIds.length; i++) {
-			String movieProductId = allMovieProductIds[i];
-			sortedMovies[i] = new Movie(movieProductId, totalMovieAverage(movieProductId));
-			sortedMovies[i].setScore(Double.parseDouble(df.format(sortedMovies[i].getScore())));
-		}
-		// Sorting the array, comparing the movies by their score
-		Arrays.sort(sortedMovies, new Comparator<Movie>() {
-			@Override
-			public int compare(Movie arg0, Movie arg1) {
-				double score0 = arg0.getScore();
-				double score1 = arg1.getScore();
-				if (score0 == score1) {
-					// according to the description, in such case we need to
-					// sort lexicographically by productId
-					return arg0.getProductId().compareTo(arg1.getProductId());
+		// all the percentiles are cut from the same ranking
+		Ranking<Movie> sortedMovies = cachedRanking("roundedAverageRanking", Long.MAX_VALUE,
+				k -> Ranking.complete(Arrays.asList(rankByRoundedAverage(movieScoreStats()))));
+		List<Movie> outputMovies = new ArrayList<Movie>();
+		for (Movie movie : percentileCut(sortedMovies.items(), percentile)) {
+			outputMovies.add(new Movie(movie.getProductId(), movie.getScore()));
+		}
+		return outputMovies;
+	}
+
+	@Override
+	public String mostReviewedProduct() {
+		final ExternalAggregation external = externalAggregation;
+		return cached("mostReviewedProduct", () -> {
+			if (external != null) {
+				Map<String, Long> mostReviewed = aggregateReviews(reviews -> external.topKReviewCounts(reviews, 1));
+				return mostReviewed.isEmpty() ? null : mostReviewed.keySet().iterator().next();
+			}
+			HashMap<String, Integer> reviewsPerMovie = new HashMap<String, Integer>();
+			for (MovieReview mr : snapshot()) {
+				String pid = mr.getMovie().getProductId();
+				if (reviewsPerMovie.containsKey(pid) == false) {
+					reviewsPerMovie.put(pid, 0);
 				}
-				return ((score0 > score1) ? -1 : 1);
+				reviewsPerMovie.put(pid, reviewsPerMovie.get(pid) + 1);
 			}
+
+			String mostReviewed = null;
+			int max = 0;
+			for (String id : reviewsPerMovie.keySet()) {
+				int currentValue = reviewsPerMovie.get(id);
+				if (currentValue > max) {
+					max = currentValue;
+					mostReviewed = id;
+				}
+			}
+			return mostReviewed;
 		});
-		int startFrom = (int) (sortedMovies.length * percentile);
-		Movie[] outputMovies = Arrays.copyOfRange(sortedMovies, 0, sortedMovies.length-startFrom);
-		
-		return Arrays.asList(outputMovies);
 	}
 
 	@Override
-	public String mostReviewedProduct() {
-		HashMap<String, Integer> reviewsPerMovie = new HashMap<String, Integer>();
-		for (MovieReview mr : movieReviews) {
-			String pid = mr.getMovie().getProductId();
-			if (reviewsPerMovie.containsKey(pid) == false) {
-				reviewsPerMovie.put(pid, 0);
+	public Map<String, Long> reviewCountPerMovieTopKMovies(int topK) {
+		final ExternalAggregation external = externalAggregation;
+		Ranking<Map.Entry<String, Long>> sortedCounts = cachedRanking("reviewCountPerMovie", topK,
+				k -> (external != null)
+						? Ranking.top(new ArrayList<Map.Entry<String, Long>>(
+								aggregateReviews(reviews -> external.topKReviewCounts(reviews, (int) k)).entrySet()), k)
+						: Ranking.complete(rankByCount(reviewCounts())));
+		return firstEntries(sortedCounts.first(topK));
+	}
+
+	@Override
+	public String mostPopularMovieReviewedByKUsers(int numOfUsers) {
+		final ExternalAggregation external = externalAggregation;
+		return cached("mostPopularMovieReviewedByKUsers:" + numOfUsers, () -> {
+			// movies are filtered by their distinct reviewers, not by their reviews count
+			ReviewerIndex reviewers = indexForQuery(IndexKind.MOVIE_REVIEWERS, this::reviewerIndex);
+			Set<String> reviewedByKUsers = (reviewers != null) ? reviewers.moviesReviewedByAtLeast(numOfUsers)
+					: scanMoviesReviewedByAtLeast(numOfUsers);
+			if (external != null) {
+				return aggregateReviews(reviews -> external.bestAverageAmong(reviews, reviewedByKUsers));
 			}
-			reviewsPerMovie.put(pid, reviewsPerMovie.get(pid) + 1);
+			return bestAverageAmong(movieScoreStats(), reviewedByKUsers);
+		});
+	}
+
+	@Override
+	public Map<String, Long> moviesReviewWordsCount(int topK) {
+		final ExternalAggregation external = externalAggregation;
+		Ranking<Map.Entry<String, Long>> sortedWords = cachedRanking("wordsCount", topK,
+				k -> (external != null)
+						? Ranking.top(new ArrayList<Map.Entry<String, Long>>(
+								aggregateReviews(reviews -> external.topKWords(reviews, null, (int) k)).entrySet()), k)
+						: Ranking.complete(new ArrayList<Map.Entry<String, Long>>(sortByComparator(wordsCount(null)).entrySet())));
+		return firstEntries(sortedWords.first(topK));
+	}
+
+	@Override
+	public Map<String, Long> topYMoviewsReviewTopXWordsCount(int topMovies, int topWords) {
+		final ExternalAggregation external = externalAggregation;
+		Map<String, Long> mostReviewedKMovies = reviewCountPerMovieTopKMovies(topMovies);
+		if (external != null) {
+			return new LinkedHashMap<String, Long>(cached("topYMoviesTopXWords:" + topMovies + "," + topWords,
+					() -> aggregateReviews(reviews -> external.topXWords(reviews, mostReviewedKMovies.keySet(), topWords))));
 		}
+		// the words of the same movies are counted once for any number of top words
+		Map<String, Long> wordsCount = cached("topMoviesWordsCount:" + topMovies,
+				() -> wordsCount(mostReviewedKMovies.keySet()), Map::size);
+		return topXWords(wordsCount, topWords);
+	}
 
-		String mostReviewed = null;
-		int max = 0;
-		for (String id : reviewsPerMovie.keySet()) {
-			int currentValue = reviewsPerMovie.get(id);
-			if (currentValue > max) {
-				max = currentValue;
-				mostReviewed = id;
-			}
+	@Override
+	public Map<String, Double> topKHelpfullUsers(int k) {
+		final ExternalAggregation external = externalAggregation;
+		if (external != null) {
+			return new LinkedHashMap<String, Double>(
+					cached("topKHelpfullUsers:" + k, () -> aggregateReviews(reviews -> external.topKHelpfulness(reviews, k))));
 		}
-		return mostReviewed;
+		Ranking<Map.Entry<String, Double>> sortedUsers = cachedRanking("helpfulnessRanking", Long.MAX_VALUE,
+				all -> Ranking.complete(rankByHelpfulness(usersHelpfulness())));
+		return topKHelpfulness(sortedUsers.first(k));
 	}
 
 	@Override
-	public Map<String, Long> reviewCountPerMovieTopKMovies(int topK) {
+	public long moviesCount() {
+		return cached("moviesCount", this::countMovies);
+	}
+
+	private long countMovies() {
+		ScoreColumns columns = indexForQuery(IndexKind.MOVIE_SCORES, () -> null);
+		return (columns != null) ? columns.movies().size() : scanMoviesCount();
+	}
+
+	// Partial aggregates. Each of them can be merged with the same aggregate
+	// computed by other storages holding different reviews.
+
+	public ScoreStats totalScoreStats() {
+		ScoreColumns columns = indexForQuery(IndexKind.MOVIE_SCORES, this::scoreColumns);
+		return (columns != null) ? columns.totalScoreStats() : scanScoreStats(null);
+	}
+
+	public ScoreStats movieScoreStats(String productId) {
+		ScoreColumns columns = indexForQuery(IndexKind.MOVIE_SCORES, this::scoreColumns);
+		return (columns != null) ? columns.movieScoreStats(productId) : scanScoreStats(productId);
+	}
+
+	public Map<String, ScoreStats> movieScoreStats() {
+		ScoreColumns columns = indexForQuery(IndexKind.MOVIE_SCORES, this::scoreColumns);
+		return (columns != null) ? columns.movieScoreStats() : scanMovieScoreStats();
+	}
+
+	// Full scan aggregates, computed from the reviews themselves without any
+	// index. They scan a copy, so reviews can be added meanwhile.
+
+	/**
+	 * @param productId - the movie, null for all the movies
+	 */
+	public ScoreStats scanScoreStats(String productId) {
+		ScoreStats stats = new ScoreStats();
+		for (MovieReview mr : snapshot()) {
+			if (productId == null || productId.equals(mr.getMovie().getProductId())) {
+				stats.add(mr.getMovie().getScore());
+			}
+		}
+		return stats;
+	}
+
+	public Map<String, ScoreStats> scanMovieScoreStats() {
+		Map<String, ScoreStats> statsPerMovie = new HashMap<String, ScoreStats>();
+		for (MovieReview mr : snapshot()) {
+			ScoreStats stats = statsPerMovie.get(mr.getMovie().getProductId());
+			if (stats == null) {
+				stats = new ScoreStats();
+				statsPerMovie.put(mr.getMovie().getProductId(), stats);
+			}
+			stats.add(mr.getMovie().getScore());
+		}
+		return statsPerMovie;
+	}
+
+	public Set<String> scanMoviesReviewedByAtLeast(long numOfUsers) {
+		Map<String, Set<String>> usersPerMovie = new HashMap<String, Set<String>>();
+		for (MovieReview mr : snapshot()) {
+			Set<String> users = usersPerMovie.get(mr.getMovie().getProductId());
+			if (users == null) {
+				users = new HashSet<String>();
+				usersPerMovie.put(mr.getMovie().getProductId(), users);
+			}
+			users.add(mr.getUserId());
+		}
+		Set<String> movies = new HashSet<String>();
+		for (Map.Entry<String, Set<String>> entry : usersPerMovie.entrySet()) {
+			if (entry.getValue().size() >= numOfUsers) {
+				movies.add(entry.getKey());
+			}
+		}
+		return movies;
+	}
+
+	public long scanMoviesCount() {
+		LinkedList<String> MovieNum = new LinkedList<String>();
+		// create a list of the movies
+		for (MovieReview mr : snapshot()) {
+			String pid = mr.getMovie().getProductId();
+			if (MovieNum.contains(pid) == false) {
+				MovieNum.add(pid);
+			}
+		}
+		// return the size of the list
+		return MovieNum.size();
+	}
+
+	/**
+	 * @return - map of product id to number of its reviews
+	 */
+	public Map<String, Long> reviewCounts() {
 		// create a map of id and number of reviews per movie
 		Map<String, Long> ReviewCount = new HashMap<String, Long>();
-		for (MovieReview mr : movieReviews) {
+		for (MovieReview mr : snapshot()) {
 			String pid = mr.getMovie().getProductId();
 			if (ReviewCount.containsKey(pid) == false) {
 				ReviewCount.put(pid, (long) 0);
 			}
 			ReviewCount.put(pid, ReviewCount.get(pid) + 1);
 		}
-		// put the K top reviewed movies in a map
-		Map<String, Long> TopKReview = new HashMap<String, Long>();
-		for (int i = 0; i < topK; i++) {
-			// find the most reviewed movie in the map
-			String reviewed = null;
-			long max = 0;
-			for (String id : ReviewCount.keySet()) {
-				long count = ReviewCount.get(id);
-				if (count > max) {
-					max = count;
-					reviewed = id;
-				}
+		return ReviewCount;
+	}
 
+	/**
+	 * @param productIds - movies to count the words of their reviews, null for all the movies
+	 * @return - map of words to their count, ordered by the words natural order
+	 */
+	public Map<String, Long> wordsCount(Set<String> productIds) {
+		WordCounts wordCounts = indexForQuery(IndexKind.WORD_COUNTS, () -> null);
+		if (wordCounts != null) {
+			return wordCounts.wordsCount(productIds);
+		}
+		Map<String, Long> wordsCountMap = new TreeMap<String, Long>();
+		for (MovieReview mr : snapshot()) {
+			if (productIds != null && !productIds.contains(mr.getMovie().getProductId())) {
+				continue;
+			}
+			String[] splitted = words(mr.getReview());
+			for (String word : splitted) {
+				Long count = wordsCountMap.get(word);
+				wordsCountMap.put(word, (count == null) ? 1 : count + 1);
 			}
-			ReviewCount.remove(reviewed, max);
-			TopKReview.put(reviewed, max);
 		}
-		// sorting the map
-		return sortByComparator(TopKReview);
+		return wordsCountMap;
 	}
 
-	@Override
-	public String mostPopularMovieReviewedByKUsers(int numOfUsers) {
+	/**
+	 * @return - map of user id to sums of his helpfulness votes, {helpful, total}
+	 */
+	public Map<String, long[]> usersHelpfulness() {
+		UserVotes userVotes = indexForQuery(IndexKind.USER_VOTES, () -> null);
+		if (userVotes != null) {
+			return userVotes.helpfulness();
+		}
+		Map<String, long[]> helpfulness = new HashMap<String, long[]>();
+		for (MovieReview mr : snapshot()) {
+			long[] votes = helpfulness.get(mr.getUserId());
+			if (votes == null) {
+				votes = new long[2];
+				helpfulness.put(mr.getUserId(), votes);
+			}
+			String[] tm = mr.getHelpfulness().split("/");
+			votes[0] += Integer.parseInt(tm[0]);
+			votes[1] += Integer.parseInt(tm[1]);
+		}
+		return helpfulness;
+	}
 
-		Map<String, Integer> reviewsPerMovie = new HashMap<String, Integer>();
-		Map<String, Integer> reviewsPerMovieBnum = new HashMap<String, Integer>();
+	/**
+	 * @return - the words of a review text, split in the same way by every words count and index
+	 */
+	public static String[] words(String text) {
+		return WORD_SEPARATOR.split(text);
+	}
 
-		for (MovieReview mr : movieReviews) {
-			String pid = mr.getMovie().getProductId();
-			if (! reviewsPerMovie.containsKey(pid)) {
-				reviewsPerMovie.put(pid, 0);
-			}
-			reviewsPerMovie.put(pid, reviewsPerMovie.get(pid) + 1);
+	// Ranking utilities, shared by every storage so results are ordered and
+	// rounded in exactly the same way.
+
+	/**
+	 * @return - all the movies with their (not rounded) average, sorted by @{@link #AVERAGE_ORDER}
+	 */
+	public static Movie[] rankByAverage(Map<String, ScoreStats> statsPerMovie) {
+		Movie sortedMovies[] = new Movie[statsPerMovie.size()];
+		int i = 0;
+		for (Map.Entry<String, ScoreStats> entry : statsPerMovie.entrySet()) {
+			sortedMovies[i++] = new Movie(entry.getKey(), entry.getValue().average());
+		}
+		Arrays.sort(sortedMovies, AVERAGE_ORDER);
+		return sortedMovies;
+	}
+
+	public static List<Movie> percentileOf(Map<String, ScoreStats> statsPerMovie, double percentile) {
+		return new ArrayList<Movie>(percentileCut(Arrays.asList(rankByRoundedAverage(statsPerMovie)), percentile));
+	}
+
+	/**
+	 * @return - all the movies with their rounded average, sorted by @{@link #AVERAGE_ORDER}
+	 */
+	public static Movie[] rankByRoundedAverage(Map<String, ScoreStats> statsPerMovie) {
+		Movie sortedMovies[] = new Movie[statsPerMovie.size()];
+		int i = 0;
+		for (Map.Entry<String, ScoreStats> entry : statsPerMovie.entrySet()) {
+			// the percentile is computed over the rounded averages
+			sortedMovies[i++] = new Movie(entry.getKey(), ScoreFormat.round(entry.getValue().average()));
 		}
+		Arrays.sort(sortedMovies, AVERAGE_ORDER);
+		return sortedMovies;
+	}
+
+	/**
+	 * @param sortedMovies - ranking by @{@link #rankByRoundedAverage(Map)}
+	 * @return - the movies of the ranking in the given percentile
+	 */
+	public static List<Movie> percentileCut(List<Movie> sortedMovies, double percentile) {
+		percentile /= 100.0;
+		int startFrom = (int) (sortedMovies.size() * percentile);
+		return sortedMovies.subList(0, sortedMovies.size() - startFrom);
+	}
+
+	/**
+	 * @return - top k entries with highest count, in case of same count ordered
+	 * by the key, as an ordered map
+	 */
+	public static Map<String, Long> topKByCount(Map<String, Long> counts, int topK) {
+		List<Map.Entry<String, Long>> list = rankByCount(counts);
+		return firstEntries(list.subList(0, Math.min(topK, list.size())));
+	}
 
-		for (String currentKey : reviewsPerMovie.keySet()) {
-			if (reviewsPerMovie.get(currentKey) >= numOfUsers) {
-				reviewsPerMovieBnum.put(currentKey, reviewsPerMovie.get(currentKey));
+	/**
+	 * @return - all the entries, with highest count first and in case of same count ordered by the key
+	 */
+	public static List<Map.Entry<String, Long>> rankByCount(Map<String, Long> counts) {
+		List<Map.Entry<String, Long>> list = new ArrayList<Map.Entry<String, Long>>(counts.entrySet());
+		Collections.sort(list, new Comparator<Map.Entry<String, Long>>() {
+			public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+				int byCount = (o2.getValue()).compareTo(o1.getValue());
+				return (byCount != 0) ? byCount : o1.getKey().compareTo(o2.getKey());
 			}
+		});
+		return list;
+	}
+
+	/**
+	 * @return - the entries as a map in the same order
+	 */
+	private static <V> Map<String, V> firstEntries(List<Map.Entry<String, V>> entries) {
+		Map<String, V> topKMap = new LinkedHashMap<String, V>();
+		for (Map.Entry<String, V> entry : entries) {
+			topKMap.put(entry.getKey(), entry.getValue());
 		}
+		return topKMap;
+	}
 
+	/**
+	 * @param productIds - the movies to choose from
+	 * @return - product id of the movie with highest average among the given
+	 * movies, lowest product id in case of same average
+	 */
+	public static String bestAverageAmong(Map<String, ScoreStats> statsPerMovie, Set<String> productIds) {
 		double maxscore = 0.0;
 		String winningPid = null;
-		for (String pid : reviewsPerMovieBnum.keySet()) {
-			double movieAvgScore = this.totalMovieAverage(pid);
+		for (Map.Entry<String, ScoreStats> entry : statsPerMovie.entrySet()) {
+			if (!productIds.contains(entry.getKey())) {
+				continue;
+			}
+			String pid = entry.getKey();
+			double movieAvgScore = entry.getValue().average();
 			if (winningPid == null) {
 				winningPid = pid;
 				maxscore = movieAvgScore;
@@ -241,24 +772,13 @@ public class MoviesStorage implements IMoviesStorage {
 				maxscore = movieAvgScore;
 			}
 		}
-		
 		return winningPid;
 	}
 
-	@Override
-	public Map<String, Long> moviesReviewWordsCount(int topK) {
-		Map<String, Long> wordsCountMap = new TreeMap<String, Long>();
-		for (MovieReview mr : movieReviews) {
-			String review = mr.getReview();
-			String[] splitted = review.split("\\s");
-			for (String word : splitted) {
-				if (wordsCountMap.containsKey(word) == false) {
-					wordsCountMap.put(word, (long) 0);
-				}
-				wordsCountMap.put(word, wordsCountMap.get(word) + 1);
-			}
-		}
-
+	/**
+	 * @param wordsCountMap - words count ordered by the words natural order
+	 */
+	public static Map<String, Long> topKWords(Map<String, Long> wordsCountMap, int topK) {
 		wordsCountMap = sortByComparator(wordsCountMap);
 		Iterator<Map.Entry<String, Long>> it = wordsCountMap.entrySet().iterator();
 		int i = 0;
@@ -272,24 +792,7 @@ public class MoviesStorage implements IMoviesStorage {
 		return wordsCountMap;
 	}
 
-	@Override
-	public Map<String, Long> topYMoviewsReviewTopXWordsCount(int topMovies, int topWords) {
-		Map<String, Long> mostReviewedKMovies = reviewCountPerMovieTopKMovies(topMovies);
-		Map<String, Long> wordsCount = new HashMap<String, Long>();
-		for (MovieReview mr : movieReviews) {
-			if (!mostReviewedKMovies.containsKey(mr.getMovie().getProductId())) {
-				// We don't care about reviews which are not of the K most
-				// reviewed movies
-				continue;
-			}
-			String[] words = mr.getReview().split("\\s");
-			for (String word : words) {
-				if (!wordsCount.containsKey(word)) {
-					wordsCount.put(word, (long) 0);
-				}
-				wordsCount.put(word, wordsCount.get(word) + 1);
-			}
-		}
+	public static Map<String, Long> topXWords(final Map<String, Long> wordsCount, int topWords) {
 		String[] sortedWords = wordsCount.keySet().toArray(new String[wordsCount.size()]);
 		Arrays.sort(sortedWords, new Comparator<String>() {
 			@Override
@@ -328,85 +831,44 @@ public class MoviesStorage implements IMoviesStorage {
 		return topWordsCount;
 	}
 
-	@Override
-	public Map<String, Double> topKHelpfullUsers(int k) {
-		LinkedList<MovieReview> tempx = new LinkedList<MovieReview>(movieReviews);
-		Map<String, Double> re = new HashMap<String, Double>();
-		Map<String, Double> topk = new HashMap<String, Double>();
-
-		while (!tempx.isEmpty()) {
-			String name = tempx.getFirst().getUserId();
-
-			if (!re.containsKey(name)) {
-				re.put(name, 0.0);
-			}
-			tempx.removeFirst();
-		}
-
-		for (String Nuser : re.keySet()) {
-			Double a = 0.0;
-			Double b = 0.0;
-			Double v = 0.0;
-			String[] tm;
-			for (MovieReview mr : movieReviews) {
-				if (mr.getUserId().equals(Nuser)) {
-					tm = mr.getHelpfulness().split("/");
-					a += Integer.parseInt(tm[0]);
-					b += Integer.parseInt(tm[1]);
-				}
-			}
+	/**
+	 * @param helpfulness - map of user id to sums of his helpfulness votes, {helpful, total}
+	 */
+	public static Map<String, Double> topKHelpfulness(Map<String, long[]> helpfulness, int k) {
+		List<Map.Entry<String, Double>> users = rankByHelpfulness(helpfulness);
+		return topKHelpfulness(users.subList(0, Math.min(k, users.size())));
+	}
 
-			if (a == 0) {
-				v = 0.0;
-			} else {
-				v = a / b;
-			}
+	/**
+	 * @return - the users with their (not rounded) helpfulness, most helpful first
+	 */
+	public static List<Map.Entry<String, Double>> rankByHelpfulness(Map<String, long[]> helpfulness) {
+		final Map<String, Double> re = new HashMap<String, Double>();
+		for (Map.Entry<String, long[]> entry : helpfulness.entrySet()) {
+			long a = entry.getValue()[0];
+			long b = entry.getValue()[1];
+			// users without any votes are not taken into account
 			if (b == 0) {
-				v = -5.0;
+				continue;
 			}
-
-			re.put(Nuser, v);
-
+			re.put(entry.getKey(), (a == 0) ? 0.0 : (double) a / b);
 		}
-		if (k >= re.size()) {
-			k = re.size();
-		}
-
-		re = sortD(re);
-
-		for (int i = 0; i < k; i++) {
-			Double max = -1.0;
-			String idmax = "";
-			for (String s : re.keySet()) {
-				if (re.get(s) > max) {
-					max = re.get(s);
-					idmax = s;
-				}
-			}
-			if (idmax != "") {
-				topk.put(idmax, Double.parseDouble(df.format(re.get(idmax))));
+		return new ArrayList<Map.Entry<String, Double>>(sortD(re).entrySet());
+	}
 
-				re.remove(idmax);
-			}
+	/**
+	 * @param topUsers - first users of @{@link #rankByHelpfulness(Map)}
+	 * @return - the users with their rounded helpfulness, ordered again by it
+	 */
+	public static Map<String, Double> topKHelpfulness(List<Map.Entry<String, Double>> topUsers) {
+		Map<String, Double> topk = new HashMap<String, Double>();
+		for (Map.Entry<String, Double> user : topUsers) {
+			topk.put(user.getKey(), ScoreFormat.round(user.getValue()));
 		}
 
 		return sortD(topk);
 	}
 
-	@Override
-	public long moviesCount() {
-		LinkedList<String> MovieNum = new LinkedList<String>();
-		// create a list of the movies
-		for (MovieReview mr : movieReviews) {
-			String pid = mr.getMovie().getProductId();
-			if (MovieNum.contains(pid) == false) {
-				MovieNum.add(pid);
-			}
-		}
-		// return the size of the list
-		return MovieNum.size();
-	}
-
 	private static Map<String, Long> sortByComparator(Map<String, Long> unsortMap) {
 
 		// Convert Map to List
@@ -0,0 +1,222 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.approx;
+
+import univ.bigdata.course.external.TopK;
+import univ.bigdata.course.output.ScoreFormat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate execution of the score and count queries of
+ * @{@link univ.bigdata.course.IMoviesStorage} over a @{@link ReviewSample}.
+ * Every answer comes with a normal approximation confidence interval, corrected
+ * for sampling without replacement, so sampling everything gives exact answers
+ * with empty intervals.
+ */
+public class ApproximateQueries {
+
+	public static final double DEFAULT_CONFIDENCE = 0.95;
+	// below that the normal approximation of a movie average is not trustworthy
+	public static final long DEFAULT_MIN_SAMPLES_PER_MOVIE = 30;
+
+	// same order as the exact queries, value in decreasing order and then key
+	private static final Comparator<Estimate> VALUE_ORDER = (e1, e2) -> {
+		if (e1.getValue() != e2.getValue()) {
+			return (e1.getValue() > e2.getValue()) ? -1 : 1;
+		}
+		return e1.getKey().compareTo(e2.getKey());
+	};
+
+	private final ReviewSample sample;
+	private final double z;
+	private final long minSamplesPerMovie;
+
+	public ApproximateQueries(final ReviewSample sample) {
+		this(sample, DEFAULT_CONFIDENCE, DEFAULT_MIN_SAMPLES_PER_MOVIE);
+	}
+
+	/**
+	 * @param confidence - confidence level of the intervals, in (0..1)
+	 * @param minSamplesPerMovie - movies with less sampled reviews are ranked last by
+	 *                           @{@link #getTopKMoviesAverage(long)}, as their average is too noisy
+	 */
+	public ApproximateQueries(final ReviewSample sample, final double confidence, final long minSamplesPerMovie) {
+		this.sample = sample;
+		this.z = zScore(confidence);
+		this.minSamplesPerMovie = minSamplesPerMovie;
+	}
+
+	public Estimate totalMoviesAverageScore() {
+		return meanEstimate(null, sample.total());
+	}
+
+	public Estimate totalMovieAverage(final String productId) {
+		return meanEstimate(productId, sample.movie(productId));
+	}
+
+	/**
+	 * Movies with less than the minimal number of sampled reviews are ranked
+	 * after all the others, so they are returned only when less than k movies
+	 * have enough of them; their estimates tell how few reviews they are based on.
+	 *
+	 * @return - top k movies by their estimated average
+	 */
+	public List<Estimate> getTopKMoviesAverage(final long topK) {
+		TopK<Estimate> top = new TopK<Estimate>(topK, VALUE_ORDER);
+		TopK<Estimate> undersampled = new TopK<Estimate>(topK, VALUE_ORDER);
+		for (Map.Entry<String, ReviewSample.Moments> entry : sample.movies().entrySet()) {
+			Estimate ranked = new Estimate(entry.getKey(), entry.getValue().mean(), 0, 0, entry.getValue().n);
+			if (entry.getValue().n >= minSamplesPerMovie) {
+				top.offer(ranked);
+			} else {
+				undersampled.offer(ranked);
+			}
+		}
+		List<Estimate> result = new ArrayList<Estimate>();
+		for (Estimate ranked : top.sorted()) {
+			result.add(totalMovieAverage(ranked.getKey()));
+		}
+		for (Estimate ranked : undersampled.sorted()) {
+			if (result.size() >= topK) {
+				break;
+			}
+			result.add(totalMovieAverage(ranked.getKey()));
+		}
+		return result;
+	}
+
+	/**
+	 * @return - top k movies by their estimated reviews count
+	 */
+	public List<Estimate> reviewCountPerMovieTopKMovies(final int topK) {
+		TopK<Estimate> top = new TopK<Estimate>(topK, VALUE_ORDER);
+		for (Map.Entry<String, ReviewSample.Moments> entry : sample.movies().entrySet()) {
+			long n = entry.getValue().n;
+			double rate = sample.rate();
+			// the sampled count is binomial(N, rate)
+			double count = n / rate;
+			double error = z * Math.sqrt(n * (1 - rate)) / rate;
+			top.offer(new Estimate(entry.getKey(), ScoreFormat.round(count),
+					ScoreFormat.round(Math.max(n, count - error)), ScoreFormat.round(count + error), n));
+		}
+		return top.sorted();
+	}
+
+	/**
+	 * The errors below are relative: half the width of the confidence interval
+	 * divided by the estimated value. They are computed from the moments of the
+	 * sample without estimating, so choosing whether to estimate is cheap.
+	 * Everything sampled gives exact answers, of no error; otherwise estimates
+	 * of less than the minimal number of sampled reviews have an infinite error.
+	 *
+	 * @return - relative error of @{@link #totalMoviesAverageScore()}
+	 */
+	public double totalMoviesAverageError() {
+		return meanError(sample.total());
+	}
+
+	/**
+	 * @return - relative error of @{@link #totalMovieAverage(String)}
+	 */
+	public double movieAverageError(final String productId) {
+		return meanError(sample.movie(productId));
+	}
+
+	/**
+	 * @return - bound of the relative error of @{@link #getTopKMoviesAverage(long)}, the widest
+	 * error among all the movies with enough sampled reviews, or infinite when less than k
+	 * movies have them and undersampled movies would be returned
+	 */
+	public double topKMoviesAverageError(final long topK) {
+		if (sample.rate() >= 1) {
+			return 0;
+		}
+		return sample.aggregateMovies(movies -> {
+			long ranked = 0;
+			double widest = 0;
+			for (ReviewSample.Moments moments : movies) {
+				if (moments.n >= minSamplesPerMovie) {
+					ranked++;
+					widest = Math.max(widest, meanError(moments));
+				}
+			}
+			return (ranked < topK) ? Double.POSITIVE_INFINITY : widest;
+		});
+	}
+
+	/**
+	 * @return - relative error of @{@link #reviewCountPerMovieTopKMovies(int)}, the error of
+	 * its least sampled movie, or infinite when less than k movies are sampled
+	 */
+	public double topKReviewCountsError(final int topK) {
+		if (sample.rate() >= 1) {
+			return 0;
+		}
+		final TopK<Long> counts = new TopK<Long>(topK, Collections.reverseOrder());
+		sample.aggregateMovies(movies -> {
+			for (ReviewSample.Moments moments : movies) {
+				counts.offer(moments.n);
+			}
+			return null;
+		});
+		final List<Long> sampled = counts.sorted();
+		if (sampled.size() < topK) {
+			return Double.POSITIVE_INFINITY;
+		}
+		if (sampled.isEmpty()) {
+			return 0;
+		}
+		final long n = sampled.get(sampled.size() - 1);
+		// relative error of the count n / rate, see reviewCountPerMovieTopKMovies
+		return (n < minSamplesPerMovie) ? Double.POSITIVE_INFINITY : z * Math.sqrt((1 - sample.rate()) / n);
+	}
+
+	private double meanError(ReviewSample.Moments moments) {
+		if (sample.rate() >= 1) {
+			return 0;
+		}
+		// no variance can be estimated from a single review
+		if (moments.n < Math.max(2, minSamplesPerMovie) || moments.mean() == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return z * Math.sqrt(moments.variance() / moments.n * (1 - sample.rate())) / Math.abs(moments.mean());
+	}
+
+	private Estimate meanEstimate(String key, ReviewSample.Moments moments) {
+		if (moments.n == 0) {
+			return new Estimate(key, Double.NaN, Double.NaN, Double.NaN, 0);
+		}
+		double mean = moments.mean();
+		if (moments.n == 1 && sample.rate() < 1) {
+			// no variance can be estimated from a single review
+			return new Estimate(key, ScoreFormat.round(mean), Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 1);
+		}
+		double variance = (moments.n == 1) ? 0 : moments.variance();
+		double error = z * Math.sqrt(variance / moments.n * (1 - sample.rate()));
+		return new Estimate(key, ScoreFormat.round(mean), ScoreFormat.round(mean - error),
+				ScoreFormat.round(mean + error), moments.n);
+	}
+
+	/**
+	 * @return - z such that P(-z < Z < z) = confidence for standard normal Z, by the
+	 * rational approximation 26.2.23 of Abramowitz and Stegun (error below 4.5e-4)
+	 */
+	static double zScore(double confidence) {
+		if (confidence <= 0 || confidence >= 1) {
+			throw new IllegalArgumentException("Confidence must be in (0..1): " + confidence);
+		}
+		double p = (1 - confidence) / 2;
+		double t = Math.sqrt(-2 * Math.log(p));
+		return t - (2.515517 + 0.802853 * t + 0.010328 * t * t)
+				/ (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+	}
+}
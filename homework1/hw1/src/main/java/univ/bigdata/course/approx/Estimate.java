@@ -0,0 +1,74 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.approx;
+
+/**
+ * Approximate answer computed over a sample, with its confidence interval.
+ */
+public class Estimate {
+
+    private final String key;
+
+    private final double value;
+
+    private final double low;
+
+    private final double high;
+
+    private final long sampleSize;
+
+    public Estimate(String key, double value, double low, double high, long sampleSize) {
+        this.key = key;
+        this.value = value;
+        this.low = low;
+        this.high = high;
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * @return - what is estimated, e.g. product id of the movie, null for global estimates
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return - lower bound of the confidence interval
+     */
+    public double getLow() {
+        return low;
+    }
+
+    /**
+     * @return - upper bound of the confidence interval
+     */
+    public double getHigh() {
+        return high;
+    }
+
+    /**
+     * @return - number of sampled reviews the estimate is based on
+     */
+    public long getSampleSize() {
+        return sampleSize;
+    }
+
+    @Override
+    public String toString() {
+        return "Estimate{" +
+                (key == null ? "" : "key='" + key + "', ") +
+                "value=" + value +
+                ", low=" + low +
+                ", high=" + high +
+                ", sampleSize=" + sampleSize +
+                '}';
+    }
+}
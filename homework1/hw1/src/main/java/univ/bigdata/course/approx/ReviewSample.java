@@ -0,0 +1,136 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.approx;
+
+import univ.bigdata.course.movie.MovieReview;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Bernoulli sample of the reviews, maintained while they are ingested: every
+ * review is kept with probability "rate", independently of the others. Only
+ * the moments of the sampled scores are kept, globally and per movie (which
+ * makes every movie its own stratum), so the sample takes memory
+ * proportional to the number of movies and not to the number of reviews.
+ */
+public class ReviewSample {
+
+	private final double rate;
+	private final Random random;
+	private long populationSize = 0;
+	private final Moments total = new Moments();
+	private final Map<String, Moments> perMovie = new HashMap<String, Moments>();
+
+	/**
+	 * @param rate - probability of a review to be sampled, in (0..1]
+	 * @param seed - seed of the sampling, for reproducible samples
+	 */
+	public ReviewSample(final double rate, final long seed) {
+		if (rate <= 0 || rate > 1) {
+			throw new IllegalArgumentException("Sample rate must be in (0..1]: " + rate);
+		}
+		this.rate = rate;
+		this.random = new Random(seed);
+	}
+
+	public synchronized void offer(MovieReview mr) {
+		populationSize++;
+		if (rate < 1 && random.nextDouble() >= rate) {
+			return;
+		}
+		double score = mr.getMovie().getScore();
+		total.add(score);
+		String productId = mr.getMovie().getProductId();
+		Moments moments = perMovie.get(productId);
+		if (moments == null) {
+			moments = new Moments();
+			perMovie.put(productId, moments);
+		}
+		moments.add(score);
+	}
+
+	public double rate() {
+		return rate;
+	}
+
+	/**
+	 * @return - number of reviews offered to the sample
+	 */
+	public synchronized long populationSize() {
+		return populationSize;
+	}
+
+	/**
+	 * @return - number of sampled reviews
+	 */
+	public synchronized long sampleSize() {
+		return total.n;
+	}
+
+	synchronized Moments total() {
+		return total.copy();
+	}
+
+	synchronized Moments movie(String productId) {
+		Moments moments = perMovie.get(productId);
+		return (moments == null) ? new Moments() : moments.copy();
+	}
+
+	synchronized Map<String, Moments> movies() {
+		Map<String, Moments> copy = new HashMap<String, Moments>();
+		for (Map.Entry<String, Moments> entry : perMovie.entrySet()) {
+			copy.put(entry.getKey(), entry.getValue().copy());
+		}
+		return copy;
+	}
+
+	/**
+	 * Runs the aggregation over the moments of every sampled movie under the
+	 * sample lock, without copying them, so it must not keep or modify them.
+	 */
+	synchronized <T> T aggregateMovies(Function<Collection<Moments>, T> aggregation) {
+		return aggregation.apply(perMovie.values());
+	}
+
+	/**
+	 * Count, sum and sum of squares of sampled scores.
+	 */
+	static class Moments {
+		long n;
+		double sum;
+		double sumOfSquares;
+
+		void add(double score) {
+			n++;
+			sum += score;
+			sumOfSquares += score * score;
+		}
+
+		double mean() {
+			return sum / n;
+		}
+
+		/**
+		 * @return - unbiased sample variance
+		 */
+		double variance() {
+			return Math.max(0, (sumOfSquares - sum * sum / n) / (n - 1));
+		}
+
+		Moments copy() {
+			Moments copy = new Moments();
+			copy.n = n;
+			copy.sum = sum;
+			copy.sumOfSquares = sumOfSquares;
+			return copy;
+		}
+	}
+}
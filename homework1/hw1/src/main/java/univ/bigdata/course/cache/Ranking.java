@@ -0,0 +1,64 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.cache;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The first elements of a ranking, or all of them. A cached ranking of the
+ * top k elements answers the same query for any smaller k.
+ *
+ * @param <T> - type of the ranked elements
+ */
+public class Ranking<T> {
+
+	private final List<T> items;
+	private final boolean complete;
+
+	private Ranking(List<T> items, boolean complete) {
+		this.items = Collections.unmodifiableList(items);
+		this.complete = complete;
+	}
+
+	/**
+	 * @param items - all the ranked elements
+	 */
+	public static <T> Ranking<T> complete(List<T> items) {
+		return new Ranking<T>(items, true);
+	}
+
+	/**
+	 * @param items - the top elements of the ranking, computed for top k
+	 */
+	public static <T> Ranking<T> top(List<T> items, long k) {
+		// less than k elements means there are no more
+		return new Ranking<T>(items, items.size() < k);
+	}
+
+	/**
+	 * @return - true when the ranking holds the first k elements
+	 */
+	public boolean covers(long k) {
+		return complete || k <= items.size();
+	}
+
+	public List<T> items() {
+		return items;
+	}
+
+	/**
+	 * @return - the first k elements, or all of them when there are less
+	 */
+	public List<T> first(long k) {
+		return items.subList(0, (int) Math.min(k, items.size()));
+	}
+
+	public int size() {
+		return items.size();
+	}
+}
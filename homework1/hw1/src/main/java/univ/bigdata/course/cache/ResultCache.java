@@ -0,0 +1,118 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Results of queries, keyed by the query type and parameters and valid for a
+ * single version of the data. Bounded both by the number of entries and by
+ * their total weight (roughly the number of elements they hold), the least
+ * recently used entries are evicted first. Results heavier than the whole
+ * cache are not kept. Cached values are shared, so they must not be modified.
+ */
+public class ResultCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 256;
+	public static final long DEFAULT_MAX_WEIGHT = 1 << 20;
+
+	private static class Entry {
+		final long version;
+		final Object value;
+		final long weight;
+
+		Entry(long version, Object value, long weight) {
+			this.version = version;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	private final int maxEntries;
+	private final long maxWeight;
+	// in access order, least recently used first
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long weight = 0;
+	private long hits = 0;
+	private long misses = 0;
+
+	public ResultCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+	}
+
+	public ResultCache(final int maxEntries, final long maxWeight) {
+		if (maxEntries <= 0 || maxWeight <= 0) {
+			throw new IllegalArgumentException("Cache bounds must be positive");
+		}
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * @return - the cached result of the query for the given data version, null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <T> T get(String key, long version) {
+		Entry entry = entries.get(key);
+		if (entry == null || entry.version != version) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return (T) entry.value;
+	}
+
+	/**
+	 * @param weight - approximate size of the result, such as its number of elements
+	 */
+	public synchronized void put(String key, long version, Object value, long weight) {
+		remove(key);
+		if (weight > maxWeight) {
+			return;
+		}
+		entries.put(key, new Entry(version, value, weight));
+		this.weight += weight;
+		Iterator<Entry> it = entries.values().iterator();
+		while ((entries.size() > maxEntries || this.weight > maxWeight) && it.hasNext()) {
+			this.weight -= it.next().weight;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Drops all the results, called when the data changes.
+	 */
+	public synchronized void invalidate() {
+		entries.clear();
+		weight = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long weight() {
+		return weight;
+	}
+
+	public synchronized long hits() {
+		return hits;
+	}
+
+	public synchronized long misses() {
+		return misses;
+	}
+
+	private void remove(String key) {
+		Entry old = entries.remove(key);
+		if (old != null) {
+			weight -= old.weight;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.column;
+
+import univ.bigdata.course.index.IdDictionary;
+import univ.bigdata.course.movie.MovieReview;
+import univ.bigdata.course.partition.ScoreStats;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Columnar copy of the reviews scores: the scores and the dictionary encoded
+ * product ids are kept in contiguous primitive arrays, in reviews order, so
+ * aggregations run over them with @{@link ScoreKernels} instead of following
+ * the pointers of every review.
+ */
+public class ScoreColumns {
+
+	private final IdDictionary movies = new IdDictionary();
+	private final double[] scores;
+	private final int[] movieIds;
+	private final int size;
+
+	public ScoreColumns(final Iterable<MovieReview> reviews) {
+		double[] scores = new double[1024];
+		int[] movieIds = new int[1024];
+		int size = 0;
+		for (MovieReview mr : reviews) {
+			if (size == scores.length) {
+				scores = Arrays.copyOf(scores, size * 2);
+				movieIds = Arrays.copyOf(movieIds, size * 2);
+			}
+			scores[size] = mr.getMovie().getScore();
+			movieIds[size] = movies.encode(mr.getMovie().getProductId());
+			size++;
+		}
+		this.scores = scores;
+		this.movieIds = movieIds;
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public IdDictionary movies() {
+		return movies;
+	}
+
+	public ScoreStats totalScoreStats() {
+		return new ScoreStats(ScoreKernels.sum(scores, 0, size), size);
+	}
+
+	public ScoreStats movieScoreStats(String productId) {
+		int movie = movies.idOf(productId);
+		if (movie < 0) {
+			return new ScoreStats();
+		}
+		return new ScoreStats(ScoreKernels.maskedSum(scores, movieIds, movie, 0, size),
+				ScoreKernels.maskedCount(movieIds, movie, 0, size));
+	}
+
+	public Map<String, ScoreStats> movieScoreStats() {
+		double[] sums = new double[movies.size()];
+		long[] counts = new long[movies.size()];
+		ScoreKernels.groupedSum(scores, movieIds, 0, size, sums, counts);
+		Map<String, ScoreStats> statsPerMovie = new HashMap<String, ScoreStats>();
+		for (int movie = 0; movie < sums.length; movie++) {
+			statsPerMovie.put(movies.valueOf(movie), new ScoreStats(sums[movie], counts[movie]));
+		}
+		return statsPerMovie;
+	}
+
+	public double minScore() {
+		return ScoreKernels.min(scores, 0, size);
+	}
+
+	public double maxScore() {
+		return ScoreKernels.max(scores, 0, size);
+	}
+
+	/**
+	 * @see ScoreKernels#histogram(double[], int, int)
+	 */
+	public long[] scoresHistogram() {
+		return ScoreKernels.histogram(scores, 0, size);
+	}
+}
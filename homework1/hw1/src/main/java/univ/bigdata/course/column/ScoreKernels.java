@@ -0,0 +1,108 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.column;
+
+/**
+ * Aggregation kernels over primitive columns. The loops are kept simple,
+ * counted and branch free, with several independent accumulators, so the JIT
+ * can unroll them and use SIMD instructions where it is able to.
+ * <p>
+ * Kernels which reorder additions (e.g. @{@link #sum(double[], int, int)}) are
+ * exact for scores which are whole numbers, as all review scores are.
+ */
+public final class ScoreKernels {
+
+    public static final int MIN_SCORE = 1;
+    public static final int MAX_SCORE = 5;
+
+    private ScoreKernels() {
+    }
+
+    public static double sum(double[] values, int from, int to) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            s0 += values[i];
+            s1 += values[i + 1];
+            s2 += values[i + 2];
+            s3 += values[i + 3];
+        }
+        for (; i < to; i++) {
+            s0 += values[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public static double min(double[] values, int from, int to) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    public static double max(double[] values, int from, int to) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Sum of the values which group is the given one, the other values are
+     * masked out instead of branching on them.
+     */
+    public static double maskedSum(double[] values, int[] groups, int group, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += (groups[i] == group) ? values[i] : 0.0;
+        }
+        return sum;
+    }
+
+    public static int maskedCount(int[] groups, int group, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            count += (groups[i] == group) ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Adds every value to the sum of its group and counts it, values are
+     * added in their order so each group sum is the same as a sequential one.
+     *
+     * @param sums - sums per group id, added to
+     * @param counts - counts per group id, added to
+     */
+    public static void groupedSum(double[] values, int[] groups, int from, int to, double[] sums, long[] counts) {
+        for (int i = from; i < to; i++) {
+            int group = groups[i];
+            sums[group] += values[i];
+            counts[group]++;
+        }
+    }
+
+    /**
+     * Histogram of whole scores between @{@link #MIN_SCORE} and @{@link #MAX_SCORE}.
+     *
+     * @return - histogram[s] is the number of scores equal to s, histogram[0] counts
+     * the scores which are not whole numbers in the range.
+     */
+    public static long[] histogram(double[] scores, int from, int to) {
+        long[] histogram = new long[MAX_SCORE + 1];
+        for (int i = from; i < to; i++) {
+            double score = scores[i];
+            int bucket = (int) score;
+            // out of range and fractional scores go to bucket 0
+            bucket = (bucket == score && bucket >= MIN_SCORE && bucket <= MAX_SCORE) ? bucket : 0;
+            histogram[bucket]++;
+        }
+        return histogram;
+    }
+}
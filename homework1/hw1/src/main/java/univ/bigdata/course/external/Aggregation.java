@@ -0,0 +1,36 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.external;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Describes the mutable per key value of @{@link SpillingAggregator}: how to
+ * create it, merge two partial values and write them to spill files.
+ *
+ * @param <V> - type of the aggregated value
+ */
+public interface Aggregation<V> {
+
+    V create();
+
+    /**
+     * Adds the partial value "from" into "into".
+     */
+    void merge(final V into, final V from);
+
+    void write(final DataOutputStream out, final V value) throws IOException;
+
+    V read(final DataInputStream in) throws IOException;
+
+    /**
+     * @return - approximate heap size of a single value in bytes
+     */
+    int estimatedSize();
+}
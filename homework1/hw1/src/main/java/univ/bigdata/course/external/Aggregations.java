@@ -0,0 +1,105 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.external;
+
+import univ.bigdata.course.partition.ScoreStats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Aggregations used by the storage queries.
+ */
+public final class Aggregations {
+
+	/**
+	 * Single counter, long[1].
+	 */
+	public static final Aggregation<long[]> COUNT = new LongSum(1);
+
+	/**
+	 * Helpfulness votes, long[2] of {helpful, total}.
+	 */
+	public static final Aggregation<long[]> VOTES = new LongSum(2);
+
+	/**
+	 * Sum and count of scores.
+	 */
+	public static final Aggregation<ScoreStats> SCORE = new Aggregation<ScoreStats>() {
+		@Override
+		public ScoreStats create() {
+			return new ScoreStats();
+		}
+
+		@Override
+		public void merge(ScoreStats into, ScoreStats from) {
+			into.merge(from);
+		}
+
+		@Override
+		public void write(DataOutputStream out, ScoreStats value) throws IOException {
+			out.writeDouble(value.getSum());
+			out.writeLong(value.getCount());
+		}
+
+		@Override
+		public ScoreStats read(DataInputStream in) throws IOException {
+			return new ScoreStats(in.readDouble(), in.readLong());
+		}
+
+		@Override
+		public int estimatedSize() {
+			return 32;
+		}
+	};
+
+	private Aggregations() {
+	}
+
+	private static class LongSum implements Aggregation<long[]> {
+
+		private final int width;
+
+		LongSum(int width) {
+			this.width = width;
+		}
+
+		@Override
+		public long[] create() {
+			return new long[width];
+		}
+
+		@Override
+		public void merge(long[] into, long[] from) {
+			for (int i = 0; i < width; i++) {
+				into[i] += from[i];
+			}
+		}
+
+		@Override
+		public void write(DataOutputStream out, long[] value) throws IOException {
+			for (int i = 0; i < width; i++) {
+				out.writeLong(value[i]);
+			}
+		}
+
+		@Override
+		public long[] read(DataInputStream in) throws IOException {
+			long[] value = new long[width];
+			for (int i = 0; i < width; i++) {
+				value[i] = in.readLong();
+			}
+			return value;
+		}
+
+		@Override
+		public int estimatedSize() {
+			return 16 + 8 * width;
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.external;
+
+import univ.bigdata.course.MoviesStorage;
+import univ.bigdata.course.movie.Movie;
+import univ.bigdata.course.movie.MovieReview;
+import univ.bigdata.course.partition.ScoreStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * External memory execution of the aggregations which state may not fit into
+ * the heap: per word counts, per movie counts and per user helpfulness. The
+ * state is aggregated by @{@link SpillingAggregator} under the given memory
+ * budget and only the top k results are kept in memory, the results are the
+ * same as the in memory ones of @{@link MoviesStorage}.
+ */
+public class ExternalAggregation {
+
+	// count in decreasing order, then key in natural order
+	private static final Comparator<Map.Entry<String, Long>> COUNT_ORDER = (o1, o2) -> {
+		int byCount = o2.getValue().compareTo(o1.getValue());
+		return (byCount != 0) ? byCount : o1.getKey().compareTo(o2.getKey());
+	};
+
+	private final long memoryBudget;
+	private final File spillDirectory;
+
+	/**
+	 * @param memoryBudget - approximate number of bytes the state of a single aggregation may take,
+	 *                     raised to @{@link SpillingAggregator#MIN_MEMORY_BUDGET} if smaller
+	 * @param spillDirectory - directory of the spill files, null for the default temporary directory
+	 */
+	public ExternalAggregation(final long memoryBudget, final File spillDirectory) {
+		this.memoryBudget = memoryBudget;
+		this.spillDirectory = spillDirectory;
+	}
+
+	public Map<String, Long> topKReviewCounts(Iterable<MovieReview> reviews, int topK) {
+		try (SpillingAggregator<long[]> counts = new SpillingAggregator<long[]>(Aggregations.COUNT, memoryBudget, spillDirectory)) {
+			for (MovieReview mr : reviews) {
+				counts.accumulator(mr.getMovie().getProductId())[0]++;
+			}
+			return MoviesStorage.topKByCount(topCounts(counts, topK, COUNT_ORDER), topK);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return - top k movies with their not rounded average
+	 */
+	public List<Movie> topKMoviesAverage(Iterable<MovieReview> reviews, long topK) {
+		try (SpillingAggregator<ScoreStats> scores = scoresPerMovie(reviews)) {
+			TopK<Movie> top = new TopK<Movie>(topK, MoviesStorage.AVERAGE_ORDER);
+			scores.forEach((productId, stats) -> top.offer(new Movie(productId, stats.average())));
+			return top.sorted();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @param productIds - the movies to choose from
+	 */
+	public String bestAverageAmong(Iterable<MovieReview> reviews, Set<String> productIds) {
+		try (SpillingAggregator<ScoreStats> scores = scoresPerMovie(reviews)) {
+			TopK<Movie> top = new TopK<Movie>(1, MoviesStorage.AVERAGE_ORDER);
+			scores.forEach((productId, stats) -> {
+				if (productIds.contains(productId)) {
+					top.offer(new Movie(productId, stats.average()));
+				}
+			});
+			List<Movie> best = top.sorted();
+			return best.isEmpty() ? null : best.get(0).getProductId();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Same as @{@link MoviesStorage#topKWords(Map, int)} of all the words.
+	 *
+	 * @param productIds - movies to count the words of their reviews, null for all
+	 */
+	public Map<String, Long> topKWords(Iterable<MovieReview> reviews, Set<String> productIds, int topK) {
+		try (SpillingAggregator<long[]> counts = wordsCount(reviews, productIds)) {
+			return MoviesStorage.topKWords(new TreeMap<String, Long>(topCounts(counts, topK, COUNT_ORDER)), topK);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Same as @{@link MoviesStorage#topXWords(Map, int)} of all the words.
+	 *
+	 * @param productIds - movies to count the words of their reviews, null for all
+	 */
+	public Map<String, Long> topXWords(Iterable<MovieReview> reviews, Set<String> productIds, int topWords) {
+		try (SpillingAggregator<long[]> counts = wordsCount(reviews, productIds)) {
+			// topXWords keeps the lexicographically last words among words with same count
+			Map<String, Long> top = topCounts(counts, topWords, (o1, o2) -> {
+				int byCount = o2.getValue().compareTo(o1.getValue());
+				return (byCount != 0) ? byCount : o2.getKey().compareTo(o1.getKey());
+			});
+			return MoviesStorage.topXWords(top, topWords);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public Map<String, Double> topKHelpfulness(Iterable<MovieReview> reviews, int k) {
+		try (SpillingAggregator<long[]> votes = new SpillingAggregator<long[]>(Aggregations.VOTES, memoryBudget, spillDirectory)) {
+			for (MovieReview mr : reviews) {
+				long[] userVotes = votes.accumulator(mr.getUserId());
+				String[] tm = mr.getHelpfulness().split("/");
+				userVotes[0] += Integer.parseInt(tm[0]);
+				userVotes[1] += Integer.parseInt(tm[1]);
+			}
+			// same order as the in memory ranking, helpfulness in decreasing order and then user id
+			TopK<Map.Entry<String, long[]>> top = new TopK<Map.Entry<String, long[]>>(k, (o1, o2) -> {
+				int byHelpfulness = Double.compare(helpfulness(o2.getValue()), helpfulness(o1.getValue()));
+				return (byHelpfulness != 0) ? byHelpfulness : o1.getKey().compareTo(o2.getKey());
+			});
+			votes.forEach((userId, userVotes) -> {
+				// users without any votes are not ranked
+				if (userVotes[1] != 0) {
+					top.offer(new AbstractMap.SimpleImmutableEntry<String, long[]>(userId, userVotes));
+				}
+			});
+			Map<String, long[]> selected = new HashMap<String, long[]>();
+			for (Map.Entry<String, long[]> entry : top.sorted()) {
+				selected.put(entry.getKey(), entry.getValue());
+			}
+			return MoviesStorage.topKHelpfulness(selected, k);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static double helpfulness(long[] votes) {
+		return (votes[0] == 0) ? 0.0 : (double) votes[0] / votes[1];
+	}
+
+	private SpillingAggregator<ScoreStats> scoresPerMovie(Iterable<MovieReview> reviews) throws IOException {
+		SpillingAggregator<ScoreStats> scores = new SpillingAggregator<ScoreStats>(Aggregations.SCORE, memoryBudget, spillDirectory);
+		try {
+			for (MovieReview mr : reviews) {
+				scores.accumulator(mr.getMovie().getProductId()).add(mr.getMovie().getScore());
+			}
+		} catch (IOException | RuntimeException e) {
+			scores.close();
+			throw e;
+		}
+		return scores;
+	}
+
+	private SpillingAggregator<long[]> wordsCount(Iterable<MovieReview> reviews, Set<String> productIds) throws IOException {
+		SpillingAggregator<long[]> counts = new SpillingAggregator<long[]>(Aggregations.COUNT, memoryBudget, spillDirectory);
+		try {
+			for (MovieReview mr : reviews) {
+				if (productIds != null && !productIds.contains(mr.getMovie().getProductId())) {
+					continue;
+				}
+				for (String word : MoviesStorage.words(mr.getReview())) {
+					counts.accumulator(word)[0]++;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			counts.close();
+			throw e;
+		}
+		return counts;
+	}
+
+	private static Map<String, Long> topCounts(SpillingAggregator<long[]> counts, int topK,
+											   Comparator<Map.Entry<String, Long>> order) throws IOException {
+		TopK<Map.Entry<String, Long>> top = new TopK<Map.Entry<String, Long>>(topK, order);
+		counts.forEach((key, count) -> top.offer(new AbstractMap.SimpleImmutableEntry<String, Long>(key, count[0])));
+		Map<String, Long> selected = new HashMap<String, Long>();
+		for (Map.Entry<String, Long> entry : top.sorted()) {
+			selected.put(entry.getKey(), entry.getValue());
+		}
+		return selected;
+	}
+}
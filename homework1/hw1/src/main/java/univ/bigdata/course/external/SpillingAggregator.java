@@ -0,0 +1,241 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.external;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Hash aggregation of string keys which keeps its state under a given memory
+ * budget. Once the estimated size of the in memory map exceeds the budget, its
+ * entries are sorted by key and spilled to a temporary run file. When the
+ * result is requested the runs are merged (k-way, in several passes if there
+ * are too many of them), so every key is reported exactly once with its fully
+ * merged value while only one entry per run is held in memory.
+ *
+ * @param <V> - type of the aggregated value
+ */
+public class SpillingAggregator<V> implements Closeable {
+
+	// smaller budgets are raised to it, so a run holds enough entries for the merge to pay off
+	public static final long MIN_MEMORY_BUDGET = 1L << 20;
+	// HashMap node, String object with its array header and the table slot
+	private static final int ENTRY_OVERHEAD = 96;
+	// maximal number of runs merged at once
+	private static final int MAX_FAN_IN = 64;
+	private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+	private final Aggregation<V> aggregation;
+	private final long memoryBudget;
+	private final File spillDirectory;
+	private Map<String, V> values = new HashMap<String, V>();
+	private long estimatedBytes = 0;
+	private final List<File> runs = new ArrayList<File>();
+
+	public interface EntryConsumer<V> {
+		void accept(String key, V value) throws IOException;
+	}
+
+	/**
+	 * @param memoryBudget - approximate number of bytes the in memory state may take, at least @{@link #MIN_MEMORY_BUDGET}
+	 * @param spillDirectory - directory of the run files, null for the default temporary directory
+	 */
+	public SpillingAggregator(final Aggregation<V> aggregation, final long memoryBudget, final File spillDirectory) {
+		this.aggregation = aggregation;
+		this.memoryBudget = Math.max(memoryBudget, MIN_MEMORY_BUDGET);
+		this.spillDirectory = spillDirectory;
+	}
+
+	/**
+	 * @return - the in memory value of the key to be updated in place, created
+	 * (and possibly spilling the other values before) if the key is not in memory
+	 */
+	public V accumulator(String key) throws IOException {
+		V value = values.get(key);
+		if (value == null) {
+			long size = ENTRY_OVERHEAD + 2L * key.length() + aggregation.estimatedSize();
+			if (estimatedBytes + size > memoryBudget && !values.isEmpty()) {
+				spill();
+			}
+			value = aggregation.create();
+			values.put(key, value);
+			estimatedBytes += size;
+		}
+		return value;
+	}
+
+	/**
+	 * @return - number of runs spilled to disk so far
+	 */
+	public int spillCount() {
+		return runs.size();
+	}
+
+	/**
+	 * Reports every key with its merged value. If anything was spilled, keys are
+	 * reported in their natural order, and this method may be called only once
+	 * since the runs are deleted once they are merged.
+	 */
+	public void forEach(EntryConsumer<V> consumer) throws IOException {
+		if (runs.isEmpty()) {
+			for (Map.Entry<String, V> entry : values.entrySet()) {
+				consumer.accept(entry.getKey(), entry.getValue());
+			}
+			return;
+		}
+		if (!values.isEmpty()) {
+			spill();
+		}
+		try {
+			while (runs.size() > MAX_FAN_IN) {
+				List<File> group = new ArrayList<File>(runs.subList(0, MAX_FAN_IN));
+				File merged = newRunFile();
+				runs.add(merged);
+				try (DataOutputStream out = openRun(merged)) {
+					merge(group, (key, value) -> writeEntry(out, key, value));
+					out.writeBoolean(false);
+				}
+				delete(group);
+				runs.subList(0, MAX_FAN_IN).clear();
+			}
+			merge(runs, consumer);
+		} finally {
+			delete(runs);
+			runs.clear();
+		}
+	}
+
+	@Override
+	public void close() {
+		delete(runs);
+		runs.clear();
+		values.clear();
+	}
+
+	private void spill() throws IOException {
+		List<String> keys = new ArrayList<String>(values.keySet());
+		Collections.sort(keys);
+		File run = newRunFile();
+		// added before writing, so a partially written run is deleted as well
+		runs.add(run);
+		try (DataOutputStream out = openRun(run)) {
+			for (String key : keys) {
+				writeEntry(out, key, values.get(key));
+			}
+			out.writeBoolean(false);
+		}
+		// a new map, so the table of the old one is released as well
+		values = new HashMap<String, V>();
+		estimatedBytes = 0;
+	}
+
+	private void merge(List<File> group, EntryConsumer<V> consumer) throws IOException {
+		PriorityQueue<RunCursor> cursors = new PriorityQueue<RunCursor>(group.size(),
+				(c1, c2) -> c1.key.compareTo(c2.key));
+		try {
+			for (File run : group) {
+				RunCursor cursor = new RunCursor(run);
+				if (cursor.next()) {
+					cursors.add(cursor);
+				} else {
+					cursor.close();
+				}
+			}
+			while (!cursors.isEmpty()) {
+				RunCursor cursor = cursors.poll();
+				String key = cursor.key;
+				V value = cursor.value;
+				advance(cursor, cursors);
+				while (!cursors.isEmpty() && cursors.peek().key.equals(key)) {
+					RunCursor same = cursors.poll();
+					aggregation.merge(value, same.value);
+					advance(same, cursors);
+				}
+				consumer.accept(key, value);
+			}
+		} finally {
+			for (RunCursor cursor : cursors) {
+				cursor.close();
+			}
+		}
+	}
+
+	private void advance(RunCursor cursor, PriorityQueue<RunCursor> cursors) throws IOException {
+		if (cursor.next()) {
+			cursors.add(cursor);
+		} else {
+			cursor.close();
+		}
+	}
+
+	private File newRunFile() throws IOException {
+		// runs are deleted by forEach or close, not on exit, which would keep every path until then
+		return File.createTempFile("movies-aggregation", ".run", spillDirectory);
+	}
+
+	private static DataOutputStream openRun(File run) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), IO_BUFFER_SIZE));
+	}
+
+	// Entries are prefixed by true, the end of the run is marked by false
+	private void writeEntry(DataOutputStream out, String key, V value) throws IOException {
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		out.writeBoolean(true);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		aggregation.write(out, value);
+	}
+
+	private static void delete(List<File> files) {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	private class RunCursor {
+		private final DataInputStream in;
+		private String key;
+		private V value;
+
+		RunCursor(File run) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), IO_BUFFER_SIZE));
+		}
+
+		boolean next() throws IOException {
+			if (!in.readBoolean()) {
+				return false;
+			}
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			key = new String(bytes, StandardCharsets.UTF_8);
+			value = aggregation.read(in);
+			return true;
+		}
+
+		void close() {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// nothing to do, the run is deleted anyway
+			}
+		}
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.external;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the k first elements according to the given order out of a stream
+ * of elements, using memory proportional to k only.
+ *
+ * @param <T> - type of the elements
+ */
+public class TopK<T> {
+
+	private final long k;
+	private final Comparator<? super T> order;
+	// the worst kept element is on the head, so it is the one to be replaced
+	private final PriorityQueue<T> heap;
+
+	public TopK(final long k, final Comparator<? super T> order) {
+		this.k = k;
+		this.order = order;
+		this.heap = new PriorityQueue<T>(11, Collections.reverseOrder(order));
+	}
+
+	public void offer(T element) {
+		if (heap.size() < k) {
+			heap.add(element);
+		} else if (k > 0 && order.compare(element, heap.peek()) < 0) {
+			heap.poll();
+			heap.add(element);
+		}
+	}
+
+	/**
+	 * @return - the kept elements, sorted by the order
+	 */
+	public List<T> sorted() {
+		List<T> sorted = new ArrayList<T>(heap);
+		Collections.sort(sorted, order);
+		return sorted;
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding of string ids (users, movies, terms) into dense
+ * integers 0..size-1, in order of first appearance.
+ */
+public class IdDictionary {
+
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private final List<String> values = new ArrayList<String>();
+
+	/**
+	 * @return - id of the value, a new one if the value was not seen before
+	 */
+	public int encode(String value) {
+		Integer id = ids.get(value);
+		if (id == null) {
+			id = values.size();
+			ids.put(value, id);
+			values.add(value);
+		}
+		return id;
+	}
+
+	/**
+	 * @return - id of the value, -1 if the value is unknown
+	 */
+	public int idOf(String value) {
+		Integer id = ids.get(value);
+		return (id == null) ? -1 : id;
+	}
+
+	public String valueOf(int id) {
+		return values.get(id);
+	}
+
+	public int size() {
+		return values.size();
+	}
+}
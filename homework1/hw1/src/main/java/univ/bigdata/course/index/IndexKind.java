@@ -0,0 +1,21 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.index;
+
+/**
+ * The aggregate indexes built by @{@link IndexManager}.
+ */
+public enum IndexKind {
+    /** Per movie scores, @{@link univ.bigdata.course.column.ScoreColumns} */
+    MOVIE_SCORES,
+    /** Per movie distinct reviewers, @{@link ReviewerIndex} */
+    MOVIE_REVIEWERS,
+    /** Per user helpfulness votes, @{@link UserVotes} */
+    USER_VOTES,
+    /** Per movie words count, @{@link WordCounts} */
+    WORD_COUNTS
+}
@@ -0,0 +1,229 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.index;
+
+import univ.bigdata.course.movie.MovieReview;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Builds the aggregate indexes of a storage on background threads, so the
+ * storage can be queried right after the reviews are loaded. Queries ask for
+ * an index with @{@link #get(IndexKind)} and scan the reviews while it is not
+ * ready; every such request is counted, and whenever a build thread is free
+ * it builds the missing index which was requested most, in order of
+ * registration when requested equally. The indexes are built over a snapshot
+ * of the reviews, taken once and shared by the builds over the same reviews,
+ * and @{@link #invalidate()} drops them when reviews are added. The builds
+ * over the new reviews start on the next request, so adding many reviews
+ * doesn't build the indexes again after each of them. An index which fails
+ * to build is not built again until reviews are added, its queries keep
+ * scanning meanwhile and the failure is kept for @{@link #failure(IndexKind)}.
+ */
+public class IndexManager implements AutoCloseable {
+
+	private final Supplier<List<MovieReview>> snapshots;
+	private final Map<IndexKind, Function<List<MovieReview>, ?>> builders = new EnumMap<IndexKind, Function<List<MovieReview>, ?>>(IndexKind.class);
+	private final Map<IndexKind, Object> ready = new EnumMap<IndexKind, Object>(IndexKind.class);
+	private final Map<IndexKind, Long> requests = new EnumMap<IndexKind, Long>(IndexKind.class);
+	private final Set<IndexKind> pending = EnumSet.noneOf(IndexKind.class);
+	private final Set<IndexKind> building = EnumSet.noneOf(IndexKind.class);
+	private final Map<IndexKind, Throwable> failures = new EnumMap<IndexKind, Throwable>(IndexKind.class);
+	private final int threads;
+	private final ExecutorService executor;
+	// incremented on invalidation, indexes built over older snapshots are dropped
+	private long version = 0;
+	private boolean closed = false;
+	// snapshot shared by the builds of its version, taken out of the manager lock as the
+	// storage invalidates while holding its own lock, which taking the snapshot needs
+	private final Object snapshotLock = new Object();
+	private List<MovieReview> snapshot = null;
+	private long snapshotVersion = -1;
+
+	/**
+	 * @param snapshots - returns a copy of the current reviews, safe to read while reviews are added
+	 * @param threads - number of indexes built at once
+	 */
+	public IndexManager(final Supplier<List<MovieReview>> snapshots, final int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+		}
+		this.snapshots = snapshots;
+		this.threads = threads;
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "index-builder");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+	}
+
+	/**
+	 * Adds an index to build, the builder is called on a background thread.
+	 */
+	public synchronized <T> void register(IndexKind kind, Function<List<MovieReview>, T> builder) {
+		builders.put(kind, builder);
+		requests.put(kind, 0L);
+		pending.add(kind);
+		schedule();
+	}
+
+	/**
+	 * Counts a request of the index by a query.
+	 *
+	 * @return - the index, null when it is not built yet and the query should scan
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <T> T get(IndexKind kind) {
+		final Long count = requests.get(kind);
+		if (count == null) {
+			return null;
+		}
+		requests.put(kind, count + 1);
+		schedule();
+		return (T) ready.get(kind);
+	}
+
+	public synchronized boolean isReady(IndexKind kind) {
+		return ready.containsKey(kind);
+	}
+
+	/**
+	 * @return - why the last build of the index failed, null when it didn't
+	 */
+	public synchronized Throwable failure(IndexKind kind) {
+		return failures.get(kind);
+	}
+
+	/**
+	 * @return - number of times queries asked for the index
+	 */
+	public synchronized long requests(IndexKind kind) {
+		final Long count = requests.get(kind);
+		return (count == null) ? 0 : count;
+	}
+
+	/**
+	 * Drops the built indexes, they are built again over the current reviews
+	 * once they are requested, also the ones which failed.
+	 */
+	public synchronized void invalidate() {
+		version++;
+		ready.clear();
+		failures.clear();
+		pending.addAll(builders.keySet());
+	}
+
+	/**
+	 * Waits until all the registered indexes are built or failed.
+	 *
+	 * @return - false when the time passed before, or an index failed
+	 */
+	public synchronized boolean awaitReady(long timeoutMillis) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (!closed && ready.size() + failures.size() < builders.size()) {
+			// also rebuilds the indexes dropped by reviews added meanwhile
+			schedule();
+			final long left = deadline - System.currentTimeMillis();
+			if (left <= 0) {
+				return false;
+			}
+			wait(left);
+		}
+		return ready.size() == builders.size();
+	}
+
+	@Override
+	public synchronized void close() {
+		closed = true;
+		executor.shutdownNow();
+		notifyAll();
+	}
+
+	// starts the builds of the most requested missing indexes, while there are free threads
+	private void schedule() {
+		while (!closed && building.size() < threads) {
+			IndexKind next = null;
+			for (IndexKind kind : pending) {
+				if (building.contains(kind)) {
+					continue;
+				}
+				if (next == null || requests.get(kind) > requests.get(next)) {
+					next = kind;
+				}
+			}
+			if (next == null) {
+				return;
+			}
+			pending.remove(next);
+			building.add(next);
+			final IndexKind kind = next;
+			final Function<List<MovieReview>, ?> builder = builders.get(kind);
+			final long buildVersion = version;
+			executor.execute(() -> build(kind, builder, buildVersion));
+		}
+	}
+
+	private void build(IndexKind kind, Function<List<MovieReview>, ?> builder, long buildVersion) {
+		Object index = null;
+		Throwable failure = null;
+		try {
+			index = builder.apply(snapshotOf(buildVersion));
+		} catch (Throwable e) {
+			failure = e;
+		}
+		final boolean last;
+		synchronized (this) {
+			building.remove(kind);
+			if (buildVersion != version) {
+				// built over old reviews, built again over the current ones once requested
+				pending.add(kind);
+			} else if (failure != null) {
+				// not built again until reviews are added, its queries keep scanning
+				failures.put(kind, failure);
+			} else {
+				ready.put(kind, index);
+			}
+			notifyAll();
+			if (buildVersion == version) {
+				schedule();
+			}
+			last = building.isEmpty();
+		}
+		if (last) {
+			releaseSnapshot(buildVersion);
+		}
+	}
+
+	// the reviews of the given version, or of a later one when they were added meanwhile
+	private List<MovieReview> snapshotOf(long buildVersion) {
+		synchronized (snapshotLock) {
+			if (snapshot == null || snapshotVersion < buildVersion) {
+				snapshot = snapshots.get();
+				snapshotVersion = buildVersion;
+			}
+			return snapshot;
+		}
+	}
+
+	// no build uses the snapshot any more, builds requested later take a new one
+	private void releaseSnapshot(long buildVersion) {
+		synchronized (snapshotLock) {
+			if (snapshotVersion <= buildVersion) {
+				snapshot = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.index;
+
+import univ.bigdata.course.MoviesStorage;
+import univ.bigdata.course.external.TopK;
+import univ.bigdata.course.movie.MovieReview;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Full text index over the text and the summary of the reviews. Maps every
+ * term to the compressed @{@link PostingList} of the reviews containing it (in
+ * the text or in the summary).
+ * <p>
+ * Review ids are assigned in product id order, so the reviews of each movie
+ * have a contiguous range of ids, and restricting a search to a movie is just
+ * restricting the posting lists to its range.
+ * <p>
+ * Terms are the words of the texts, split as the words count queries split
+ * them, lower cased independently of the default locale.
+ */
+public class InvertedIndex {
+
+	private final MovieReview[] reviews;
+	private final IdDictionary movies = new IdDictionary();
+	// reviews of movie m have ids [movieStarts[m], movieStarts[m + 1])
+	private final int[] movieStarts;
+	private final Map<String, PostingList> postings = new HashMap<String, PostingList>();
+
+	public InvertedIndex(final Iterable<MovieReview> allReviews) {
+		List<MovieReview> sorted = new ArrayList<MovieReview>();
+		for (MovieReview mr : allReviews) {
+			sorted.add(mr);
+		}
+		// stable, so reviews of the same movie keep their order
+		Collections.sort(sorted, (mr1, mr2) -> mr1.getMovie().getProductId().compareTo(mr2.getMovie().getProductId()));
+		reviews = sorted.toArray(new MovieReview[sorted.size()]);
+
+		List<Integer> starts = new ArrayList<Integer>();
+		Map<String, PostingList.Builder> builders = new HashMap<String, PostingList.Builder>();
+		for (int id = 0; id < reviews.length; id++) {
+			String productId = reviews[id].getMovie().getProductId();
+			if (movies.idOf(productId) < 0) {
+				movies.encode(productId);
+				starts.add(id);
+			}
+			addTerms(builders, id, reviews[id].getSummary());
+			addTerms(builders, id, reviews[id].getReview());
+		}
+		starts.add(reviews.length);
+		movieStarts = new int[starts.size()];
+		for (int i = 0; i < movieStarts.length; i++) {
+			movieStarts[i] = starts.get(i);
+		}
+		for (Map.Entry<String, PostingList.Builder> entry : builders.entrySet()) {
+			postings.put(entry.getKey(), entry.getValue().build());
+		}
+	}
+
+	private static void addTerms(Map<String, PostingList.Builder> builders, int id, String text) {
+		if (text == null) {
+			return;
+		}
+		for (String word : MoviesStorage.words(text)) {
+			if (word.isEmpty()) {
+				continue;
+			}
+			String term = normalize(word);
+			PostingList.Builder builder = builders.get(term);
+			if (builder == null) {
+				builder = new PostingList.Builder();
+				builders.put(term, builder);
+			}
+			// terms repeated in the same review are ignored by the builder
+			builder.add(id);
+		}
+	}
+
+	/**
+	 * @return - the term as it is kept in the index
+	 */
+	public static String normalize(String term) {
+		return term.toLowerCase(Locale.ROOT);
+	}
+
+	public int termsCount() {
+		return postings.size();
+	}
+
+	/**
+	 * @return - number of reviews containing the term
+	 */
+	public int documentFrequency(String term) {
+		PostingList list = postings.get(normalize(term));
+		return (list == null) ? 0 : list.size();
+	}
+
+	/**
+	 * @return - reviews of the movie which contain the term
+	 */
+	public List<MovieReview> reviewsContaining(String productId, String term) {
+		return search(productId, term);
+	}
+
+	/**
+	 * Conjunctive search, the lists are intersected starting from the shortest one.
+	 *
+	 * @param productId - movie to restrict the search to, null for all the movies
+	 * @return - reviews containing all the terms, in product id order
+	 */
+	public List<MovieReview> search(String productId, String... terms) {
+		List<MovieReview> result = new ArrayList<MovieReview>();
+		int from = 0;
+		int to = reviews.length;
+		if (productId != null) {
+			int movie = movies.idOf(productId);
+			if (movie < 0) {
+				return result;
+			}
+			from = movieStarts[movie];
+			to = movieStarts[movie + 1];
+		}
+		if (terms.length == 0) {
+			return result;
+		}
+		PostingList[] lists = new PostingList[terms.length];
+		for (int i = 0; i < terms.length; i++) {
+			lists[i] = postings.get(normalize(terms[i]));
+			if (lists[i] == null) {
+				return result;
+			}
+		}
+		Arrays.sort(lists, (l1, l2) -> Integer.compare(l1.size(), l2.size()));
+		PostingList.Cursor[] cursors = new PostingList.Cursor[lists.length];
+		for (int i = 0; i < lists.length; i++) {
+			cursors[i] = lists[i].cursor();
+		}
+
+		int candidate = cursors[0].advance(from);
+		while (candidate != PostingList.NO_MORE_IDS && candidate < to) {
+			int next = candidate;
+			for (int i = 1; i < cursors.length && next == candidate; i++) {
+				next = cursors[i].advance(candidate);
+			}
+			if (next == PostingList.NO_MORE_IDS) {
+				break;
+			}
+			if (next == candidate) {
+				result.add(reviews[candidate]);
+				candidate = cursors[0].next();
+			} else {
+				// some list has no candidate, leaping the shortest list to its next id
+				candidate = cursors[0].advance(next);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return - top k movies with most reviews containing the term, ordered by this
+	 * count in decreasing order and then by product id
+	 */
+	public Map<String, Long> topMoviesMentioning(String term, int topK) {
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		PostingList list = postings.get(normalize(term));
+		if (list == null) {
+			return result;
+		}
+		long[] counts = new long[movies.size()];
+		PostingList.Cursor cursor = list.cursor();
+		int movie = 0;
+		for (int id = cursor.next(); id != PostingList.NO_MORE_IDS; id = cursor.next()) {
+			// ids are increasing, so are their movies
+			while (id >= movieStarts[movie + 1]) {
+				movie++;
+			}
+			counts[movie]++;
+		}
+		TopK<Map.Entry<String, Long>> top = new TopK<Map.Entry<String, Long>>(topK, (o1, o2) -> {
+			int byCount = o2.getValue().compareTo(o1.getValue());
+			return (byCount != 0) ? byCount : o1.getKey().compareTo(o2.getKey());
+		});
+		for (int m = 0; m < counts.length; m++) {
+			if (counts[m] > 0) {
+				top.offer(new AbstractMap.SimpleImmutableEntry<String, Long>(movies.valueOf(m), counts[m]));
+			}
+		}
+		for (Map.Entry<String, Long> entry : top.sorted()) {
+			result.put(entry.getKey(), entry.getValue());
+		}
+		return result;
+	}
+}
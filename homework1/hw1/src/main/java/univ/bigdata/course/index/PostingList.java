@@ -0,0 +1,163 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.index;
+
+import java.util.Arrays;
+
+/**
+ * Immutable increasing list of ids, compressed as deltas between consecutive
+ * ids encoded as varints (7 bits per byte, high bit set when more bytes follow).
+ * Every SKIP_INTERVAL ids a skip entry is kept, so @{@link Cursor#advance(int)}
+ * can jump over whole blocks without decoding them.
+ */
+public class PostingList {
+
+	public static final int NO_MORE_IDS = -1;
+
+	private static final int SKIP_INTERVAL = 64;
+
+	private final byte[] data;
+	private final int size;
+	// for block k (postings k * SKIP_INTERVAL ...): its byte offset and the id preceding it
+	private final int[] skipOffsets;
+	private final int[] skipPrevIds;
+
+	private PostingList(byte[] data, int size, int[] skipOffsets, int[] skipPrevIds) {
+		this.data = data;
+		this.size = size;
+		this.skipOffsets = skipOffsets;
+		this.skipPrevIds = skipPrevIds;
+	}
+
+	/**
+	 * @return - number of ids in the list
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return - compressed size in bytes
+	 */
+	public int sizeInBytes() {
+		return data.length + 8 * skipOffsets.length;
+	}
+
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	public static class Builder {
+		private byte[] data = new byte[8];
+		private int length = 0;
+		private int size = 0;
+		private int lastId = -1;
+		private int[] skipOffsets = new int[1];
+		private int[] skipPrevIds = new int[1];
+
+		/**
+		 * Adds id, which must be higher than the previous one. Adding the
+		 * last id again is ignored.
+		 */
+		public Builder add(int id) {
+			if (id == lastId) {
+				return this;
+			}
+			if (id < lastId) {
+				throw new IllegalArgumentException("Ids must be added in increasing order: " + id + " after " + lastId);
+			}
+			if (size % SKIP_INTERVAL == 0) {
+				int block = size / SKIP_INTERVAL;
+				if (block == skipOffsets.length) {
+					skipOffsets = Arrays.copyOf(skipOffsets, block * 2);
+					skipPrevIds = Arrays.copyOf(skipPrevIds, block * 2);
+				}
+				skipOffsets[block] = length;
+				skipPrevIds[block] = lastId;
+			}
+			if (length + 5 > data.length) {
+				data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+			}
+			int delta = id - lastId;
+			while ((delta & ~0x7F) != 0) {
+				data[length++] = (byte) ((delta & 0x7F) | 0x80);
+				delta >>>= 7;
+			}
+			data[length++] = (byte) delta;
+			lastId = id;
+			size++;
+			return this;
+		}
+
+		public PostingList build() {
+			int blocks = (size + SKIP_INTERVAL - 1) / SKIP_INTERVAL;
+			return new PostingList(Arrays.copyOf(data, length), size,
+					Arrays.copyOf(skipOffsets, blocks), Arrays.copyOf(skipPrevIds, blocks));
+		}
+	}
+
+	/**
+	 * Forward only iterator over the ids.
+	 */
+	public class Cursor {
+		private int offset = 0;
+		private int index = 0;
+		private int id = -1;
+
+		/**
+		 * @return - the next id, or @{@link #NO_MORE_IDS}
+		 */
+		public int next() {
+			if (index >= size) {
+				id = NO_MORE_IDS;
+				return id;
+			}
+			int delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[offset++];
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			id += delta;
+			index++;
+			return id;
+		}
+
+		/**
+		 * @return - the first id which is not lower than target, or @{@link #NO_MORE_IDS}
+		 */
+		public int advance(int target) {
+			if (id == NO_MORE_IDS && index >= size) {
+				return NO_MORE_IDS;
+			}
+			if (index > 0 && id >= target) {
+				return id;
+			}
+			// jumping to the last block which starts below the target
+			int block = index / SKIP_INTERVAL + 1;
+			while (block < skipOffsets.length && skipPrevIds[block] < target) {
+				offset = skipOffsets[block];
+				id = skipPrevIds[block];
+				index = block * SKIP_INTERVAL;
+				block++;
+			}
+			while (next() != NO_MORE_IDS && id < target) {
+				// decoding until reaching the target
+			}
+			return id;
+		}
+
+		/**
+		 * @return - the current id, the last one returned
+		 */
+		public int id() {
+			return id;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.index;
+
+import univ.bigdata.course.movie.MovieReview;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps every movie to the @{@link RoaringBitmap} of the (dictionary encoded)
+ * users who reviewed it, so unique reviewers are counted exactly no matter how
+ * many times a user reviewed the same movie.
+ */
+public class ReviewerIndex {
+
+	private final IdDictionary users = new IdDictionary();
+	private final Map<String, RoaringBitmap> reviewers = new HashMap<String, RoaringBitmap>();
+
+	public ReviewerIndex(final Iterable<MovieReview> reviews) {
+		for (MovieReview mr : reviews) {
+			add(mr);
+		}
+	}
+
+	public void add(MovieReview mr) {
+		String productId = mr.getMovie().getProductId();
+		RoaringBitmap bitmap = reviewers.get(productId);
+		if (bitmap == null) {
+			bitmap = new RoaringBitmap();
+			reviewers.put(productId, bitmap);
+		}
+		bitmap.add(users.encode(mr.getUserId()));
+	}
+
+	/**
+	 * @return - number of distinct users who reviewed the movie
+	 */
+	public long uniqueReviewers(String productId) {
+		RoaringBitmap bitmap = reviewers.get(productId);
+		return (bitmap == null) ? 0 : bitmap.cardinality();
+	}
+
+	/**
+	 * @return - number of distinct users who reviewed both movies
+	 */
+	public long commonReviewers(String productId1, String productId2) {
+		RoaringBitmap bitmap1 = reviewers.get(productId1);
+		RoaringBitmap bitmap2 = reviewers.get(productId2);
+		return (bitmap1 == null || bitmap2 == null) ? 0 : bitmap1.andCardinality(bitmap2);
+	}
+
+	/**
+	 * @return - ids of the users who reviewed both movies, in order of their first review
+	 */
+	public List<String> reviewersOfBoth(String productId1, String productId2) {
+		List<String> result = new ArrayList<String>();
+		RoaringBitmap bitmap1 = reviewers.get(productId1);
+		RoaringBitmap bitmap2 = reviewers.get(productId2);
+		if (bitmap1 == null || bitmap2 == null) {
+			return result;
+		}
+		for (int user : bitmap1.and(bitmap2).toArray()) {
+			result.add(users.valueOf(user));
+		}
+		return result;
+	}
+
+	/**
+	 * @return - product ids of the movies reviewed by at least numOfUsers distinct users
+	 */
+	public Set<String> moviesReviewedByAtLeast(long numOfUsers) {
+		Set<String> movies = new HashSet<String>();
+		for (Map.Entry<String, RoaringBitmap> entry : reviewers.entrySet()) {
+			if (entry.getValue().cardinality() >= numOfUsers) {
+				movies.add(entry.getKey());
+			}
+		}
+		return movies;
+	}
+
+	/**
+	 * @return - approximate memory taken by the bitmaps
+	 */
+	public long sizeInBytes() {
+		long bytes = 0;
+		for (RoaringBitmap bitmap : reviewers.values()) {
+			bytes += bitmap.sizeInBytes();
+		}
+		return bytes;
+	}
+}
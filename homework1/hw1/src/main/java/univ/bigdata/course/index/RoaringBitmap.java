@@ -0,0 +1,432 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.index;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non negative ints in the spirit of Roaring bitmaps. Ints
+ * are split by their high 16 bits into chunks, and the low 16 bits of every
+ * chunk are kept in a container: a sorted array while the chunk has at most
+ * 4096 values, a bitmap of 2^16 bits (8KB) above it. So sparse chunks take 2
+ * bytes per value and dense ones at most 1 bit per possible value, and set
+ * operations work container by container.
+ */
+public class RoaringBitmap {
+
+	// above it a bitmap container is smaller than an array one
+	private static final int ARRAY_MAX = 4096;
+
+	private char[] keys = new char[4];
+	private Container[] containers = new Container[4];
+	private int size = 0;
+
+	public void add(int value) {
+		char high = (char) (value >>> 16);
+		int i = indexOf(high);
+		if (i < 0) {
+			i = -i - 1;
+			insert(i, high, new ArrayContainer());
+		}
+		containers[i] = containers[i].add((char) value);
+	}
+
+	public boolean contains(int value) {
+		int i = indexOf((char) (value >>> 16));
+		return i >= 0 && containers[i].contains((char) value);
+	}
+
+	public long cardinality() {
+		long cardinality = 0;
+		for (int i = 0; i < size; i++) {
+			cardinality += containers[i].cardinality;
+		}
+		return cardinality;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return - new bitmap of the values in both bitmaps
+	 */
+	public RoaringBitmap and(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				Container container = containers[i].and(other.containers[j]);
+				if (container.cardinality > 0) {
+					result.insert(result.size, keys[i], container);
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return - number of values in both bitmaps, without building their intersection
+	 */
+	public long andCardinality(RoaringBitmap other) {
+		long cardinality = 0;
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				cardinality += containers[i].andCardinality(other.containers[j]);
+				i++;
+				j++;
+			}
+		}
+		return cardinality;
+	}
+
+	/**
+	 * @return - new bitmap of the values in any of the bitmaps
+	 */
+	public RoaringBitmap or(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < size || j < other.size) {
+			if (j >= other.size || (i < size && keys[i] < other.keys[j])) {
+				result.insert(result.size, keys[i], containers[i].copy());
+				i++;
+			} else if (i >= size || keys[i] > other.keys[j]) {
+				result.insert(result.size, other.keys[j], other.containers[j].copy());
+				j++;
+			} else {
+				result.insert(result.size, keys[i], containers[i].or(other.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return - the values in increasing order
+	 */
+	public int[] toArray() {
+		int[] values = new int[(int) cardinality()];
+		int position = 0;
+		for (int i = 0; i < size; i++) {
+			position = containers[i].copyTo(values, position, keys[i] << 16);
+		}
+		return values;
+	}
+
+	/**
+	 * @return - approximate memory taken by the bitmap
+	 */
+	public long sizeInBytes() {
+		long bytes = 2L * keys.length + 8L * containers.length;
+		for (int i = 0; i < size; i++) {
+			bytes += containers[i].sizeInBytes();
+		}
+		return bytes;
+	}
+
+	private int indexOf(char high) {
+		return Arrays.binarySearch(keys, 0, size, high);
+	}
+
+	private void insert(int i, char high, Container container) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(containers, i, containers, i + 1, size - i);
+		keys[i] = high;
+		containers[i] = container;
+		size++;
+	}
+
+	private abstract static class Container {
+		int cardinality = 0;
+
+		/**
+		 * @return - the container holding the value, this one or a new one if it had to be converted
+		 */
+		abstract Container add(char value);
+
+		abstract boolean contains(char value);
+
+		abstract Container and(Container other);
+
+		abstract int andCardinality(Container other);
+
+		abstract Container or(Container other);
+
+		abstract Container copy();
+
+		abstract int copyTo(int[] values, int position, int high);
+
+		abstract int sizeInBytes();
+	}
+
+	private static class ArrayContainer extends Container {
+		char[] values = new char[4];
+
+		@Override
+		Container add(char value) {
+			int i = Arrays.binarySearch(values, 0, cardinality, value);
+			if (i >= 0) {
+				return this;
+			}
+			if (cardinality == ARRAY_MAX) {
+				return toBitmap().add(value);
+			}
+			i = -i - 1;
+			if (cardinality == values.length) {
+				values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+			}
+			System.arraycopy(values, i, values, i + 1, cardinality - i);
+			values[i] = value;
+			cardinality++;
+			return this;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+		}
+
+		@Override
+		Container and(Container other) {
+			ArrayContainer result = new ArrayContainer();
+			result.values = new char[Math.max(1, Math.min(cardinality, other.cardinality))];
+			if (other instanceof BitmapContainer) {
+				for (int i = 0; i < cardinality; i++) {
+					if (other.contains(values[i])) {
+						result.values[result.cardinality++] = values[i];
+					}
+				}
+				return result;
+			}
+			ArrayContainer array = (ArrayContainer) other;
+			int i = 0;
+			int j = 0;
+			while (i < cardinality && j < array.cardinality) {
+				if (values[i] < array.values[j]) {
+					i++;
+				} else if (values[i] > array.values[j]) {
+					j++;
+				} else {
+					result.values[result.cardinality++] = values[i];
+					i++;
+					j++;
+				}
+			}
+			return result;
+		}
+
+		@Override
+		int andCardinality(Container other) {
+			int count = 0;
+			if (other instanceof BitmapContainer) {
+				for (int i = 0; i < cardinality; i++) {
+					count += other.contains(values[i]) ? 1 : 0;
+				}
+				return count;
+			}
+			ArrayContainer array = (ArrayContainer) other;
+			int i = 0;
+			int j = 0;
+			while (i < cardinality && j < array.cardinality) {
+				if (values[i] < array.values[j]) {
+					i++;
+				} else if (values[i] > array.values[j]) {
+					j++;
+				} else {
+					count++;
+					i++;
+					j++;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		Container or(Container other) {
+			if (other instanceof BitmapContainer) {
+				return other.or(this);
+			}
+			ArrayContainer array = (ArrayContainer) other;
+			if (cardinality + array.cardinality > ARRAY_MAX) {
+				return toBitmap().or(other);
+			}
+			ArrayContainer result = new ArrayContainer();
+			result.values = new char[Math.max(1, cardinality + array.cardinality)];
+			int i = 0;
+			int j = 0;
+			while (i < cardinality || j < array.cardinality) {
+				char next;
+				if (j >= array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+					next = values[i++];
+				} else if (i >= cardinality || values[i] > array.values[j]) {
+					next = array.values[j++];
+				} else {
+					next = values[i++];
+					j++;
+				}
+				result.values[result.cardinality++] = next;
+			}
+			return result;
+		}
+
+		@Override
+		Container copy() {
+			ArrayContainer copy = new ArrayContainer();
+			copy.values = Arrays.copyOf(values, Math.max(1, cardinality));
+			copy.cardinality = cardinality;
+			return copy;
+		}
+
+		@Override
+		int copyTo(int[] out, int position, int high) {
+			for (int i = 0; i < cardinality; i++) {
+				out[position++] = high | values[i];
+			}
+			return position;
+		}
+
+		@Override
+		int sizeInBytes() {
+			return 16 + 2 * values.length;
+		}
+
+		private BitmapContainer toBitmap() {
+			BitmapContainer bitmap = new BitmapContainer();
+			for (int i = 0; i < cardinality; i++) {
+				bitmap.add(values[i]);
+			}
+			return bitmap;
+		}
+	}
+
+	private static class BitmapContainer extends Container {
+		final long[] words = new long[1 << 10];
+
+		@Override
+		Container add(char value) {
+			long before = words[value >>> 6];
+			long after = before | (1L << value);
+			words[value >>> 6] = after;
+			cardinality += (before != after) ? 1 : 0;
+			return this;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		@Override
+		Container and(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.and(this);
+			}
+			BitmapContainer bitmap = (BitmapContainer) other;
+			BitmapContainer result = new BitmapContainer();
+			for (int i = 0; i < words.length; i++) {
+				result.words[i] = words[i] & bitmap.words[i];
+				result.cardinality += Long.bitCount(result.words[i]);
+			}
+			return (result.cardinality <= ARRAY_MAX) ? result.toArrayContainer() : result;
+		}
+
+		@Override
+		int andCardinality(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.andCardinality(this);
+			}
+			BitmapContainer bitmap = (BitmapContainer) other;
+			int count = 0;
+			for (int i = 0; i < words.length; i++) {
+				count += Long.bitCount(words[i] & bitmap.words[i]);
+			}
+			return count;
+		}
+
+		@Override
+		Container or(Container other) {
+			BitmapContainer result = (BitmapContainer) copy();
+			if (other instanceof ArrayContainer) {
+				ArrayContainer array = (ArrayContainer) other;
+				for (int i = 0; i < array.cardinality; i++) {
+					result.add(array.values[i]);
+				}
+				return result;
+			}
+			BitmapContainer bitmap = (BitmapContainer) other;
+			result.cardinality = 0;
+			for (int i = 0; i < words.length; i++) {
+				result.words[i] |= bitmap.words[i];
+				result.cardinality += Long.bitCount(result.words[i]);
+			}
+			return result;
+		}
+
+		@Override
+		Container copy() {
+			BitmapContainer copy = new BitmapContainer();
+			System.arraycopy(words, 0, copy.words, 0, words.length);
+			copy.cardinality = cardinality;
+			return copy;
+		}
+
+		@Override
+		int copyTo(int[] out, int position, int high) {
+			for (int i = 0; i < words.length; i++) {
+				long word = words[i];
+				while (word != 0) {
+					out[position++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+				}
+			}
+			return position;
+		}
+
+		@Override
+		int sizeInBytes() {
+			return 16 + 8 * words.length;
+		}
+
+		private ArrayContainer toArrayContainer() {
+			ArrayContainer array = new ArrayContainer();
+			array.values = new char[Math.max(1, cardinality)];
+			copyTo(array.values);
+			array.cardinality = cardinality;
+			return array;
+		}
+
+		private void copyTo(char[] values) {
+			int position = 0;
+			for (int i = 0; i < words.length; i++) {
+				long word = words[i];
+				while (word != 0) {
+					values[position++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+	}
+}
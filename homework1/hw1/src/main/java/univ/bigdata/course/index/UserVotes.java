@@ -0,0 +1,45 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.index;
+
+import univ.bigdata.course.movie.MovieReview;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sums of the helpfulness votes of the reviews of every user.
+ */
+public class UserVotes {
+
+	private final Map<String, long[]> votesPerUser = new HashMap<String, long[]>();
+
+	public UserVotes(final Iterable<MovieReview> reviews) {
+		for (MovieReview mr : reviews) {
+			long[] votes = votesPerUser.get(mr.getUserId());
+			if (votes == null) {
+				votes = new long[2];
+				votesPerUser.put(mr.getUserId(), votes);
+			}
+			String[] tm = mr.getHelpfulness().split("/");
+			votes[0] += Integer.parseInt(tm[0]);
+			votes[1] += Integer.parseInt(tm[1]);
+		}
+	}
+
+	/**
+	 * @return - map of user id to sums of his helpfulness votes, {helpful, total}
+	 */
+	public Map<String, long[]> helpfulness() {
+		return Collections.unmodifiableMap(votesPerUser);
+	}
+
+	public int usersCount() {
+		return votesPerUser.size();
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.index;
+
+import univ.bigdata.course.MoviesStorage;
+import univ.bigdata.course.movie.MovieReview;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Counts of the words of the reviews text per movie and over all the movies,
+ * with the words split on white space as the words count queries do, so the
+ * counts of any set of movies are merged from the per movie counts instead of
+ * splitting their reviews again.
+ */
+public class WordCounts {
+
+	private final Map<String, Map<String, Long>> countsPerMovie = new HashMap<String, Map<String, Long>>();
+	private final SortedMap<String, Long> totalCounts = new TreeMap<String, Long>();
+
+	public WordCounts(final Iterable<MovieReview> reviews) {
+		for (MovieReview mr : reviews) {
+			Map<String, Long> counts = countsPerMovie.get(mr.getMovie().getProductId());
+			if (counts == null) {
+				counts = new HashMap<String, Long>();
+				countsPerMovie.put(mr.getMovie().getProductId(), counts);
+			}
+			for (String word : MoviesStorage.words(mr.getReview())) {
+				Long count = counts.get(word);
+				counts.put(word, (count == null) ? 1 : count + 1);
+			}
+		}
+		for (Map<String, Long> counts : countsPerMovie.values()) {
+			merge(totalCounts, counts);
+		}
+	}
+
+	/**
+	 * @param productIds - movies to count the words of their reviews, null for all the movies
+	 * @return - map of words to their count, ordered by the words natural order
+	 */
+	public SortedMap<String, Long> wordsCount(Set<String> productIds) {
+		if (productIds == null) {
+			return Collections.unmodifiableSortedMap(totalCounts);
+		}
+		SortedMap<String, Long> wordsCount = new TreeMap<String, Long>();
+		for (String productId : productIds) {
+			Map<String, Long> counts = countsPerMovie.get(productId);
+			if (counts != null) {
+				merge(wordsCount, counts);
+			}
+		}
+		return wordsCount;
+	}
+
+	public int vocabularySize() {
+		return totalCounts.size();
+	}
+
+	private static void merge(Map<String, Long> into, Map<String, Long> counts) {
+		for (Map.Entry<String, Long> entry : counts.entrySet()) {
+			Long count = into.get(entry.getKey());
+			into.put(entry.getKey(), (count == null) ? entry.getValue() : count + entry.getValue());
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.output;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * CSV output (RFC 4180) with "section,key,value" columns.
+ */
+public class CsvResultWriter extends RecordResultWriter {
+
+	private static final String LINE_SEPARATOR = "\r\n";
+
+	private final Writer out;
+
+	public CsvResultWriter(final Writer out) throws IOException {
+		this.out = out;
+		out.write("section,key,value");
+		out.write(LINE_SEPARATOR);
+	}
+
+	@Override
+	protected void record(String section, String key, Object value) throws IOException {
+		writeField(section);
+		out.write(',');
+		writeField(key);
+		out.write(',');
+		writeField((value == null) ? null : value.toString());
+		out.write(LINE_SEPARATOR);
+	}
+
+	private void writeField(String field) throws IOException {
+		if (field == null) {
+			return;
+		}
+		boolean quote = false;
+		for (int i = 0; i < field.length() && !quote; i++) {
+			char c = field.charAt(i);
+			quote = (c == ',' || c == '"' || c == '\n' || c == '\r');
+		}
+		if (!quote) {
+			out.write(field);
+			return;
+		}
+		out.write('"');
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c == '"') {
+				out.write('"');
+			}
+			out.write(c);
+		}
+		out.write('"');
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.output;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * JSON output, an array of {"section": .., "key": .., "value": ..} objects,
+ * one object per line. Records are written as soon as they are produced.
+ */
+public class JsonResultWriter extends RecordResultWriter {
+
+	private final Writer out;
+	private final String lineSeparator = System.lineSeparator();
+	private boolean first = true;
+	// false until the array is opened and while a record is written, so a
+	// failed write leaves the output truncated instead of closing the array
+	private boolean complete = false;
+
+	public JsonResultWriter(final Writer out) throws IOException {
+		this.out = out;
+		out.write('[');
+		complete = true;
+	}
+
+	@Override
+	protected void record(String section, String key, Object value) throws IOException {
+		complete = false;
+		out.write(first ? lineSeparator : "," + lineSeparator);
+		first = false;
+		out.write("  {\"section\": ");
+		writeString(section);
+		if (key != null) {
+			out.write(", \"key\": ");
+			writeString(key);
+		}
+		out.write(", \"value\": ");
+		writeValue(value);
+		out.write('}');
+		complete = true;
+	}
+
+	private void writeValue(Object value) throws IOException {
+		if (value == null) {
+			out.write("null");
+		} else if (value instanceof Double || value instanceof Float) {
+			double number = ((Number) value).doubleValue();
+			// JSON has no representation of NaN and infinity
+			out.write((Double.isNaN(number) || Double.isInfinite(number)) ? "null" : value.toString());
+		} else if (value instanceof Number) {
+			out.write(value.toString());
+		} else {
+			writeString(value.toString());
+		}
+	}
+
+	private void writeString(String value) throws IOException {
+		out.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				out.write("\\\"");
+				break;
+			case '\\':
+				out.write("\\\\");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.write(String.format("\\u%04x", (int) c));
+				} else {
+					out.write(c);
+				}
+			}
+		}
+		out.write('"');
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (complete) {
+				out.write(lineSeparator);
+				out.write(']');
+				out.write(lineSeparator);
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.output;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public enum OutputFormat {
+
+    TEXT {
+        @Override
+        public ResultWriter open(Writer out) {
+            return new TextResultWriter(out);
+        }
+    },
+    CSV {
+        @Override
+        public ResultWriter open(Writer out) throws IOException {
+            return new CsvResultWriter(out);
+        }
+    },
+    JSON {
+        @Override
+        public ResultWriter open(Writer out) throws IOException {
+            return new JsonResultWriter(out);
+        }
+    };
+
+    /**
+     * @return - result writer in this format, closing it closes the given writer
+     */
+    public abstract ResultWriter open(final Writer out) throws IOException;
+
+    /**
+     * @param name - name of the format, case insensitive, null for the default text format
+     */
+    public static OutputFormat of(final String name) {
+        return (name == null) ? TEXT : valueOf(name.toUpperCase());
+    }
+}
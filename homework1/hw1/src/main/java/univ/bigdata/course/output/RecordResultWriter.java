@@ -0,0 +1,53 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.output;
+
+import univ.bigdata.course.movie.Movie;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base of machine readable formats, where every result is a flat record of
+ * (section, key, value). The section of lists and maps is given with them,
+ * the section of single values is their label. Messages are not written.
+ */
+public abstract class RecordResultWriter implements ResultWriter {
+
+	protected abstract void record(String section, String key, Object value) throws IOException;
+
+	@Override
+	public void message(String text) throws IOException {
+	}
+
+	@Override
+	public void value(String label, Object value, String suffix) throws IOException {
+		// labels are written to be followed by the value, e.g. "Total average: "
+		String name = label.replaceAll("[\\s:\\[]+$", "");
+		if (value instanceof Movie) {
+			Movie movie = (Movie) value;
+			record(name, movie.getProductId(), movie.getScore());
+		} else {
+			record(name, null, value);
+		}
+	}
+
+	@Override
+	public void movies(String section, List<Movie> movies) throws IOException {
+		for (Movie movie : movies) {
+			record(section, movie.getProductId(), movie.getScore());
+		}
+	}
+
+	@Override
+	public void entries(String section, String keyName, String valueName, Map<String, ? extends Number> entries) throws IOException {
+		for (Map.Entry<String, ? extends Number> entry : entries.entrySet()) {
+			record(section, entry.getKey(), entry.getValue());
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.output;
+
+import univ.bigdata.course.movie.Movie;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the queries results in some output format, see @{@link OutputFormat}.
+ */
+public interface ResultWriter extends Closeable {
+
+    /**
+     * Free text, such as a title of the following results. Empty text
+     * separates between results. Machine readable formats skip it.
+     */
+    void message(final String text) throws IOException;
+
+    /**
+     * Single value result.
+     *
+     * @param label - text describing the value, written before it
+     * @param suffix - text written after the value
+     */
+    void value(final String label, final Object value, final String suffix) throws IOException;
+
+    /**
+     * List of movies with their scores.
+     *
+     * @param section - name of the result, which machine readable formats write with every movie
+     */
+    void movies(final String section, final List<Movie> movies) throws IOException;
+
+    /**
+     * Map of results, such as reviews count per movie.
+     *
+     * @param section - name of the result, which machine readable formats write with every entry
+     * @param keyName - name describing the keys, e.g. "User id"
+     * @param valueName - name describing the values, e.g. "helpfulness"
+     */
+    void entries(final String section, final String keyName, final String valueName, final Map<String, ? extends Number> entries) throws IOException;
+}
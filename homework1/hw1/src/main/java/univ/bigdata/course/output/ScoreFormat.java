@@ -0,0 +1,51 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.output;
+
+import java.text.DecimalFormat;
+
+/**
+ * Thread safe replacement of Double.parseDouble(new DecimalFormat("#.#####").format(x)),
+ * returns exactly the same values without creating any strings.
+ */
+public final class ScoreFormat {
+
+    // used only close to ties, DecimalFormat is not thread safe so each thread gets its own copy
+    private static final ThreadLocal<DecimalFormat> df = ThreadLocal.withInitial(() -> new DecimalFormat("#.#####"));
+
+    private static final double SCALE = 1e5;
+    // above it the scaled value may not be exactly representable as integer
+    private static final double FAST_PATH_LIMIT = (1L << 52) / SCALE;
+    // distance from the half, under which the rounding direction of the fast path may be wrong
+    private static final double TIE_MARGIN = 1e-4;
+
+    private ScoreFormat() {
+    }
+
+    /**
+     * Rounds the score to 5 digits after the decimal point, half to even.
+     */
+    public static double round(double score) {
+        if (Double.isNaN(score) || Double.isInfinite(score)) {
+            return score;
+        }
+        double abs = Math.abs(score);
+        if (abs < FAST_PATH_LIMIT) {
+            double scaled = abs * SCALE;
+            double floor = Math.floor(scaled);
+            double fraction = scaled - floor;
+            if (Math.abs(fraction - 0.5) > TIE_MARGIN) {
+                // both the integer and the scale are exact, so the division is correctly
+                // rounded to the same double the decimal string would be parsed to
+                double rounded = ((fraction > 0.5) ? floor + 1 : floor) / SCALE;
+                return Math.copySign(rounded, score);
+            }
+        }
+        // close to a tie, let DecimalFormat decide so the result stays identical
+        return Double.parseDouble(df.get().format(score));
+    }
+}
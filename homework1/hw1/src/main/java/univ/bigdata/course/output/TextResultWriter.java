@@ -0,0 +1,75 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.output;
+
+import univ.bigdata.course.movie.Movie;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Human readable output, one result per line.
+ */
+public class TextResultWriter implements ResultWriter {
+
+	private final Writer out;
+	private final String lineSeparator = System.lineSeparator();
+	// reused for every line, to avoid creating the intermediate strings
+	private final StringBuilder line = new StringBuilder(256);
+	private final char[] chunk = new char[1024];
+
+	public TextResultWriter(final Writer out) {
+		this.out = out;
+	}
+
+	@Override
+	public void message(String text) throws IOException {
+		out.write(text);
+		out.write(lineSeparator);
+	}
+
+	@Override
+	public void value(String label, Object value, String suffix) throws IOException {
+		line.setLength(0);
+		line.append(label).append(value).append(suffix).append(lineSeparator);
+		writeLine();
+	}
+
+	@Override
+	public void movies(String section, List<Movie> movies) throws IOException {
+		for (Movie movie : movies) {
+			message(movie.toString());
+		}
+	}
+
+	@Override
+	public void entries(String section, String keyName, String valueName, Map<String, ? extends Number> entries) throws IOException {
+		for (Map.Entry<String, ? extends Number> entry : entries.entrySet()) {
+			line.setLength(0);
+			line.append(keyName).append(" = [").append(entry.getKey()).append("], ")
+					.append(valueName).append(" [").append(entry.getValue()).append("].")
+					.append(lineSeparator);
+			writeLine();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	// Copies the line to the writer without turning it into a string
+	private void writeLine() throws IOException {
+		for (int start = 0; start < line.length(); start += chunk.length) {
+			int end = Math.min(line.length(), start + chunk.length);
+			line.getChars(start, end, chunk, 0);
+			out.write(chunk, 0, end - start);
+		}
+	}
+}
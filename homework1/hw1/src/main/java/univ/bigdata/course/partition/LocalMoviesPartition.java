@@ -0,0 +1,83 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.partition;
+
+import univ.bigdata.course.MoviesStorage;
+import univ.bigdata.course.movie.Movie;
+import univ.bigdata.course.movie.MovieReview;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Partition living in the current JVM, backed by its own @{@link MoviesStorage}.
+ */
+public class LocalMoviesPartition implements MoviesPartition {
+
+	private final MoviesStorage storage = new MoviesStorage();
+
+	@Override
+	public void addReview(MovieReview review) {
+		storage.addReview(review);
+	}
+
+	@Override
+	public void seal() {
+	}
+
+	@Override
+	public ScoreStats totalScoreStats() {
+		return storage.totalScoreStats();
+	}
+
+	@Override
+	public ScoreStats movieScoreStats(String productId) {
+		return storage.movieScoreStats(productId);
+	}
+
+	@Override
+	public Map<String, ScoreStats> movieScoreStats() {
+		return storage.movieScoreStats();
+	}
+
+	@Override
+	public List<Movie> topKMoviesAverage(int topK) {
+		Movie[] sortedMovies = MoviesStorage.rankByAverage(storage.movieScoreStats());
+		return Arrays.asList(Arrays.copyOf(sortedMovies, Math.min(topK, sortedMovies.length)));
+	}
+
+	@Override
+	public Map<String, Long> topKReviewCounts(int topK) {
+		return storage.reviewCountPerMovieTopKMovies(topK);
+	}
+
+	@Override
+	public Map<String, Long> wordsCount(Set<String> productIds) {
+		return storage.wordsCount(productIds);
+	}
+
+	@Override
+	public Map<String, long[]> usersHelpfulness() {
+		return storage.usersHelpfulness();
+	}
+
+	@Override
+	public long moviesCount() {
+		return storage.moviesCount();
+	}
+
+	@Override
+	public Set<String> moviesReviewedByAtLeast(int numOfUsers) {
+		return storage.reviewerIndex().moviesReviewedByAtLeast(numOfUsers);
+	}
+
+	@Override
+	public void close() {
+	}
+}
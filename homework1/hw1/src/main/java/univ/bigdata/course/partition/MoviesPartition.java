@@ -0,0 +1,73 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.partition;
+
+import univ.bigdata.course.movie.Movie;
+import univ.bigdata.course.movie.MovieReview;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Single shard of @{@link PartitionedMoviesStorage}. Holds all the reviews of
+ * the movies which were hashed into it and answers partial queries, which
+ * results are later merged with the results of the other partitions.
+ */
+public interface MoviesPartition {
+
+    /**
+     * Adds review to the partition, reviews of the same movie always
+     * arrive to the same partition.
+     */
+    void addReview(final MovieReview review);
+
+    /**
+     * Called once all the reviews were added, before the first query.
+     */
+    void seal();
+
+    ScoreStats totalScoreStats();
+
+    ScoreStats movieScoreStats(final String productId);
+
+    Map<String, ScoreStats> movieScoreStats();
+
+    /**
+     * @return - top k movies of the partition with their not rounded average,
+     * ordered as defined by @{@link univ.bigdata.course.MoviesStorage#AVERAGE_ORDER}
+     */
+    List<Movie> topKMoviesAverage(final int topK);
+
+    /**
+     * @return - top k movies of the partition by reviews count, ordered by count
+     * in decreasing order and then by product id.
+     */
+    Map<String, Long> topKReviewCounts(final int topK);
+
+    /**
+     * @param productIds - movies to count the words of their reviews, null for all
+     */
+    Map<String, Long> wordsCount(final Set<String> productIds);
+
+    /**
+     * @return - map of user id to sums of his helpfulness votes, {helpful, total}
+     */
+    Map<String, long[]> usersHelpfulness();
+
+    long moviesCount();
+
+    /**
+     * @return - product ids of the movies of the partition reviewed by at least numOfUsers distinct users
+     */
+    Set<String> moviesReviewedByAtLeast(final int numOfUsers);
+
+    /**
+     * Releases the resources held by the partition.
+     */
+    void close();
+}
@@ -0,0 +1,197 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.partition;
+
+import univ.bigdata.course.movie.Movie;
+import univ.bigdata.course.movie.MovieReview;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Wire format used between @{@link RemoteMoviesPartition} and @{@link PartitionWorker}.
+ * Every request starts with one of the op codes below followed by its arguments,
+ * every request except ADD and CLOSE is answered with its result.
+ */
+final class PartitionProtocol {
+
+    static final byte ADD = 1;
+    static final byte SEAL = 2;
+    static final byte TOTAL_SCORE_STATS = 3;
+    static final byte MOVIE_SCORE_STATS = 4;
+    static final byte ALL_MOVIES_SCORE_STATS = 5;
+    static final byte TOP_K_MOVIES_AVERAGE = 6;
+    static final byte TOP_K_REVIEW_COUNTS = 7;
+    static final byte WORDS_COUNT = 8;
+    static final byte USERS_HELPFULNESS = 9;
+    static final byte MOVIES_COUNT = 10;
+    static final byte CLOSE = 11;
+    static final byte MOVIES_REVIEWED_BY_AT_LEAST = 12;
+
+    private PartitionProtocol() {
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        // writeUTF is limited to 64K, which is not enough for long reviews
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeReview(DataOutputStream out, MovieReview review) throws IOException {
+        writeString(out, review.getMovie().getProductId());
+        out.writeDouble(review.getMovie().getScore());
+        writeString(out, review.getUserId());
+        writeString(out, review.getProfileName());
+        writeString(out, review.getHelpfulness());
+        out.writeLong((review.getTimestamp() == null) ? Long.MIN_VALUE : review.getTimestamp().getTime());
+        writeString(out, review.getSummary());
+        writeString(out, review.getReview());
+    }
+
+    static MovieReview readReview(DataInputStream in) throws IOException {
+        Movie movie = new Movie(readString(in), in.readDouble());
+        String userId = readString(in);
+        String profileName = readString(in);
+        String helpfulness = readString(in);
+        long time = in.readLong();
+        String summary = readString(in);
+        String review = readString(in);
+        return new MovieReview(movie, userId, profileName, helpfulness,
+                (time == Long.MIN_VALUE) ? null : new Date(time), summary, review);
+    }
+
+    static void writeScoreStats(DataOutputStream out, ScoreStats stats) throws IOException {
+        out.writeDouble(stats.getSum());
+        out.writeLong(stats.getCount());
+    }
+
+    static ScoreStats readScoreStats(DataInputStream in) throws IOException {
+        return new ScoreStats(in.readDouble(), in.readLong());
+    }
+
+    static void writeScoreStatsMap(DataOutputStream out, Map<String, ScoreStats> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, ScoreStats> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writeScoreStats(out, entry.getValue());
+        }
+    }
+
+    static Map<String, ScoreStats> readScoreStatsMap(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, ScoreStats> map = new HashMap<String, ScoreStats>();
+        for (int i = 0; i < size; i++) {
+            map.put(readString(in), readScoreStats(in));
+        }
+        return map;
+    }
+
+    static void writeMovies(DataOutputStream out, List<Movie> movies) throws IOException {
+        out.writeInt(movies.size());
+        for (Movie movie : movies) {
+            writeString(out, movie.getProductId());
+            out.writeDouble(movie.getScore());
+        }
+    }
+
+    static List<Movie> readMovies(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<Movie> movies = new ArrayList<Movie>(size);
+        for (int i = 0; i < size; i++) {
+            movies.add(new Movie(readString(in), in.readDouble()));
+        }
+        return movies;
+    }
+
+    static void writeCounts(DataOutputStream out, Map<String, Long> counts) throws IOException {
+        out.writeInt(counts.size());
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    /**
+     * @param sorted - whether to keep the keys in their natural order, otherwise
+     *               the order they were written in is kept
+     */
+    static Map<String, Long> readCounts(DataInputStream in, boolean sorted) throws IOException {
+        int size = in.readInt();
+        Map<String, Long> counts = sorted ? new TreeMap<String, Long>() : new LinkedHashMap<String, Long>();
+        for (int i = 0; i < size; i++) {
+            counts.put(readString(in), in.readLong());
+        }
+        return counts;
+    }
+
+    static void writeHelpfulness(DataOutputStream out, Map<String, long[]> helpfulness) throws IOException {
+        out.writeInt(helpfulness.size());
+        for (Map.Entry<String, long[]> entry : helpfulness.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeLong(entry.getValue()[0]);
+            out.writeLong(entry.getValue()[1]);
+        }
+    }
+
+    static Map<String, long[]> readHelpfulness(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, long[]> helpfulness = new HashMap<String, long[]>();
+        for (int i = 0; i < size; i++) {
+            helpfulness.put(readString(in), new long[]{in.readLong(), in.readLong()});
+        }
+        return helpfulness;
+    }
+
+    static void writeIds(DataOutputStream out, Set<String> ids) throws IOException {
+        if (ids == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(ids.size());
+        for (String id : ids) {
+            writeString(out, id);
+        }
+    }
+
+    static Set<String> readIds(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        Set<String> ids = new HashSet<String>();
+        for (int i = 0; i < size; i++) {
+            ids.add(readString(in));
+        }
+        return ids;
+    }
+}
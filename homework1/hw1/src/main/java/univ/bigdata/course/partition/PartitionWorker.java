@@ -0,0 +1,96 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.partition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Entry point of a worker JVM which holds a single partition. The worker
+ * listens on a random loopback port, prints the port to its standard output
+ * and serves requests of one @{@link RemoteMoviesPartition} until it is closed.
+ */
+public class PartitionWorker {
+
+	public static void main(String[] args) {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			System.out.println(server.getLocalPort());
+			System.out.flush();
+			try (Socket socket = server.accept()) {
+				socket.setTcpNoDelay(true);
+				serve(new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+						new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+			}
+		} catch (final Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	private static void serve(DataInputStream in, DataOutputStream out) throws IOException {
+		LocalMoviesPartition partition = new LocalMoviesPartition();
+		while (true) {
+			byte op;
+			try {
+				op = in.readByte();
+			} catch (EOFException e) {
+				// the coordinator went away without closing the partition
+				return;
+			}
+			switch (op) {
+			case PartitionProtocol.ADD:
+				partition.addReview(PartitionProtocol.readReview(in));
+				// no answer, reviews are streamed
+				continue;
+			case PartitionProtocol.SEAL:
+				partition.seal();
+				out.writeBoolean(true);
+				break;
+			case PartitionProtocol.TOTAL_SCORE_STATS:
+				PartitionProtocol.writeScoreStats(out, partition.totalScoreStats());
+				break;
+			case PartitionProtocol.MOVIE_SCORE_STATS:
+				PartitionProtocol.writeScoreStats(out, partition.movieScoreStats(PartitionProtocol.readString(in)));
+				break;
+			case PartitionProtocol.ALL_MOVIES_SCORE_STATS:
+				PartitionProtocol.writeScoreStatsMap(out, partition.movieScoreStats());
+				break;
+			case PartitionProtocol.TOP_K_MOVIES_AVERAGE:
+				PartitionProtocol.writeMovies(out, partition.topKMoviesAverage(in.readInt()));
+				break;
+			case PartitionProtocol.TOP_K_REVIEW_COUNTS:
+				PartitionProtocol.writeCounts(out, partition.topKReviewCounts(in.readInt()));
+				break;
+			case PartitionProtocol.WORDS_COUNT:
+				PartitionProtocol.writeCounts(out, partition.wordsCount(PartitionProtocol.readIds(in)));
+				break;
+			case PartitionProtocol.USERS_HELPFULNESS:
+				PartitionProtocol.writeHelpfulness(out, partition.usersHelpfulness());
+				break;
+			case PartitionProtocol.MOVIES_COUNT:
+				out.writeLong(partition.moviesCount());
+				break;
+			case PartitionProtocol.MOVIES_REVIEWED_BY_AT_LEAST:
+				PartitionProtocol.writeIds(out, partition.moviesReviewedByAtLeast(in.readInt()));
+				break;
+			case PartitionProtocol.CLOSE:
+				partition.close();
+				return;
+			default:
+				throw new IOException("Unknown operation: " + op);
+			}
+			out.flush();
+		}
+	}
+}
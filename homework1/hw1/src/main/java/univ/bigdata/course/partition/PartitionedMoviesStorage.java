@@ -0,0 +1,270 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.partition;
+
+import univ.bigdata.course.IMoviesStorage;
+import univ.bigdata.course.MoviesStorage;
+import univ.bigdata.course.movie.Movie;
+import univ.bigdata.course.movie.MovieReview;
+import univ.bigdata.course.output.ScoreFormat;
+import univ.bigdata.course.providers.MoviesProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Storage which shards the reviews by hash of the product id into several
+ * independent @{@link MoviesPartition}s. Every query is sent to all the
+ * partitions in parallel (scatter) and their partial results are merged
+ * (gather) into the same result a single @{@link MoviesStorage} would return.
+ * <p>
+ * Since all the reviews of a movie are kept in the same partition, per movie
+ * results of different partitions never overlap and only per user and per word
+ * results have to be summed.
+ */
+public class PartitionedMoviesStorage implements IMoviesStorage, AutoCloseable {
+
+	private final List<MoviesPartition> partitions;
+	private final ExecutorService executor;
+
+	public PartitionedMoviesStorage(final MoviesProvider provider, final List<? extends MoviesPartition> partitions) {
+		if (partitions.isEmpty()) {
+			throw new IllegalArgumentException("At least one partition is required");
+		}
+		this.partitions = new ArrayList<MoviesPartition>(partitions);
+		this.executor = Executors.newFixedThreadPool(partitions.size(), runnable -> {
+			Thread thread = new Thread(runnable, "movies-partition-query");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			while (provider.hasMovie()) {
+				MovieReview mr = provider.getMovie();
+				partitionOf(mr.getMovie().getProductId()).addReview(mr);
+			}
+			scatter(partition -> {
+				partition.seal();
+				return null;
+			});
+		} catch (final RuntimeException e) {
+			// the started workers are not reachable by the caller, so stop them here
+			for (MoviesPartition partition : this.partitions) {
+				try {
+					partition.close();
+				} catch (final RuntimeException closeFailure) {
+					e.addSuppressed(closeFailure);
+				}
+			}
+			executor.shutdownNow();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates storage with the given number of partitions kept in the current JVM.
+	 */
+	public static PartitionedMoviesStorage local(final MoviesProvider provider, final int numOfPartitions) {
+		List<MoviesPartition> partitions = new ArrayList<MoviesPartition>();
+		for (int i = 0; i < numOfPartitions; i++) {
+			partitions.add(new LocalMoviesPartition());
+		}
+		return new PartitionedMoviesStorage(provider, partitions);
+	}
+
+	/**
+	 * Creates storage with the given number of partitions, each kept in its own worker JVM.
+	 *
+	 * @param jvmOptions - additional options of the worker JVMs, e.g. "-Xmx2g"
+	 */
+	public static PartitionedMoviesStorage remote(final MoviesProvider provider, final int numOfPartitions,
+												  final String... jvmOptions) throws Exception {
+		List<MoviesPartition> partitions = new ArrayList<MoviesPartition>();
+		try {
+			for (int i = 0; i < numOfPartitions; i++) {
+				partitions.add(new RemoteMoviesPartition(jvmOptions));
+			}
+		} catch (final Exception e) {
+			for (MoviesPartition partition : partitions) {
+				partition.close();
+			}
+			throw new Exception("Failed to start partition workers: " + e.getMessage(), e);
+		}
+		return new PartitionedMoviesStorage(provider, partitions);
+	}
+
+	private MoviesPartition partitionOf(String productId) {
+		return partitions.get(Math.floorMod(productId.hashCode(), partitions.size()));
+	}
+
+	// Runs the query on all the partitions in parallel, results are in partitions order
+	private <T> List<T> scatter(final Function<MoviesPartition, T> query) {
+		List<Future<T>> futures = new ArrayList<Future<T>>(partitions.size());
+		for (final MoviesPartition partition : partitions) {
+			futures.add(executor.submit(() -> query.apply(partition)));
+		}
+		List<T> results = new ArrayList<T>(partitions.size());
+		try {
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for partitions", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Partition query failed", e.getCause());
+		}
+		return results;
+	}
+
+	private Map<String, ScoreStats> allMovieScoreStats() {
+		Map<String, ScoreStats> statsPerMovie = new HashMap<String, ScoreStats>();
+		for (Map<String, ScoreStats> partial : scatter(MoviesPartition::movieScoreStats)) {
+			// partitions hold disjoint movies
+			statsPerMovie.putAll(partial);
+		}
+		return statsPerMovie;
+	}
+
+	private Map<String, Long> allWordsCount(final Set<String> productIds) {
+		Map<String, Long> wordsCount = new TreeMap<String, Long>();
+		for (Map<String, Long> partial : scatter(partition -> partition.wordsCount(productIds))) {
+			for (Map.Entry<String, Long> entry : partial.entrySet()) {
+				Long count = wordsCount.get(entry.getKey());
+				wordsCount.put(entry.getKey(), (count == null) ? entry.getValue() : count + entry.getValue());
+			}
+		}
+		return wordsCount;
+	}
+
+	@Override
+	public double totalMoviesAverageScore() {
+		ScoreStats total = new ScoreStats();
+		for (ScoreStats partial : scatter(MoviesPartition::totalScoreStats)) {
+			total.merge(partial);
+		}
+		return total.average();
+	}
+
+	@Override
+	public double totalMovieAverage(String productId) {
+		return partitionOf(productId).movieScoreStats(productId).average();
+	}
+
+	@Override
+	public List<Movie> getTopKMoviesAverage(final long topK) {
+		final int partialTopK = (int) Math.min(topK, Integer.MAX_VALUE);
+		List<Movie> candidates = new ArrayList<Movie>();
+		for (List<Movie> partial : scatter(partition -> partition.topKMoviesAverage(partialTopK))) {
+			candidates.addAll(partial);
+		}
+		Collections.sort(candidates, MoviesStorage.AVERAGE_ORDER);
+		List<Movie> topKMovies = new LinkedList<Movie>();
+		for (int i = 0; i < topK; i++) {
+			Movie movie = candidates.get(i);
+			movie.setScore(ScoreFormat.round(movie.getScore()));
+			topKMovies.add(movie);
+		}
+		return topKMovies;
+	}
+
+	@Override
+	public Movie movieWithHighestAverage() {
+		return getTopKMoviesAverage(1).get(0);
+	}
+
+	@Override
+	public List<Movie> getMoviesPercentile(double percent) {
+		return MoviesStorage.percentileOf(allMovieScoreStats(), percent);
+	}
+
+	@Override
+	public String mostReviewedProduct() {
+		Map<String, Long> mostReviewed = reviewCountPerMovieTopKMovies(1);
+		return mostReviewed.isEmpty() ? null : mostReviewed.keySet().iterator().next();
+	}
+
+	@Override
+	public Map<String, Long> reviewCountPerMovieTopKMovies(final int topK) {
+		Map<String, Long> candidates = new HashMap<String, Long>();
+		for (Map<String, Long> partial : scatter(partition -> partition.topKReviewCounts(topK))) {
+			candidates.putAll(partial);
+		}
+		return MoviesStorage.topKByCount(candidates, topK);
+	}
+
+	@Override
+	public String mostPopularMovieReviewedByKUsers(final int numOfUsers) {
+		Set<String> reviewedByKUsers = new HashSet<String>();
+		for (Set<String> partial : scatter(partition -> partition.moviesReviewedByAtLeast(numOfUsers))) {
+			// all the reviews of a movie are in the same partition, so are its reviewers
+			reviewedByKUsers.addAll(partial);
+		}
+		return MoviesStorage.bestAverageAmong(allMovieScoreStats(), reviewedByKUsers);
+	}
+
+	@Override
+	public Map<String, Long> moviesReviewWordsCount(int topK) {
+		return MoviesStorage.topKWords(allWordsCount(null), topK);
+	}
+
+	@Override
+	public Map<String, Long> topYMoviewsReviewTopXWordsCount(int topMovies, int topWords) {
+		Set<String> mostReviewedMovies = reviewCountPerMovieTopKMovies(topMovies).keySet();
+		return MoviesStorage.topXWords(allWordsCount(mostReviewedMovies), topWords);
+	}
+
+	@Override
+	public Map<String, Double> topKHelpfullUsers(int k) {
+		Map<String, long[]> helpfulness = new HashMap<String, long[]>();
+		for (Map<String, long[]> partial : scatter(MoviesPartition::usersHelpfulness)) {
+			for (Map.Entry<String, long[]> entry : partial.entrySet()) {
+				long[] votes = helpfulness.get(entry.getKey());
+				if (votes == null) {
+					helpfulness.put(entry.getKey(), entry.getValue());
+				} else {
+					votes[0] += entry.getValue()[0];
+					votes[1] += entry.getValue()[1];
+				}
+			}
+		}
+		return MoviesStorage.topKHelpfulness(helpfulness, k);
+	}
+
+	@Override
+	public long moviesCount() {
+		long count = 0;
+		for (Long partial : scatter(MoviesPartition::moviesCount)) {
+			// movies are distinct across partitions
+			count += partial;
+		}
+		return count;
+	}
+
+	@Override
+	public void close() {
+		try {
+			scatter(partition -> {
+				partition.close();
+				return null;
+			});
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.partition;
+
+import univ.bigdata.course.movie.Movie;
+import univ.bigdata.course.movie.MovieReview;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Partition living in a separate local worker JVM (@{@link PartitionWorker}),
+ * which is started by this class and talked to over a loopback socket. Allows
+ * to hold more reviews than fit into a single heap.
+ */
+public class RemoteMoviesPartition implements MoviesPartition {
+
+	private final Process worker;
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+
+	/**
+	 * Starts the worker JVM with the same class path as the current one.
+	 *
+	 * @param jvmOptions - additional options of the worker JVM, e.g. "-Xmx2g"
+	 */
+	public RemoteMoviesPartition(final String... jvmOptions) throws IOException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(Arrays.asList(jvmOptions));
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(PartitionWorker.class.getName());
+		worker = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+		// the worker announces its port as the first line of its output
+		BufferedReader announce = new BufferedReader(new InputStreamReader(worker.getInputStream()));
+		String port = announce.readLine();
+		if (port == null) {
+			worker.destroy();
+			throw new IOException("Partition worker exited before announcing its port");
+		}
+		socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(port.trim()));
+		socket.setTcpNoDelay(true);
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+	}
+
+	@Override
+	public synchronized void addReview(MovieReview review) {
+		try {
+			out.writeByte(PartitionProtocol.ADD);
+			PartitionProtocol.writeReview(out, review);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized void seal() {
+		try {
+			request(PartitionProtocol.SEAL).readBoolean();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized ScoreStats totalScoreStats() {
+		try {
+			return PartitionProtocol.readScoreStats(request(PartitionProtocol.TOTAL_SCORE_STATS));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized ScoreStats movieScoreStats(String productId) {
+		try {
+			out.writeByte(PartitionProtocol.MOVIE_SCORE_STATS);
+			PartitionProtocol.writeString(out, productId);
+			out.flush();
+			return PartitionProtocol.readScoreStats(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized Map<String, ScoreStats> movieScoreStats() {
+		try {
+			return PartitionProtocol.readScoreStatsMap(request(PartitionProtocol.ALL_MOVIES_SCORE_STATS));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized List<Movie> topKMoviesAverage(int topK) {
+		try {
+			out.writeByte(PartitionProtocol.TOP_K_MOVIES_AVERAGE);
+			out.writeInt(topK);
+			out.flush();
+			return PartitionProtocol.readMovies(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized Map<String, Long> topKReviewCounts(int topK) {
+		try {
+			out.writeByte(PartitionProtocol.TOP_K_REVIEW_COUNTS);
+			out.writeInt(topK);
+			out.flush();
+			return PartitionProtocol.readCounts(in, false);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized Map<String, Long> wordsCount(Set<String> productIds) {
+		try {
+			out.writeByte(PartitionProtocol.WORDS_COUNT);
+			PartitionProtocol.writeIds(out, productIds);
+			out.flush();
+			return PartitionProtocol.readCounts(in, true);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized Map<String, long[]> usersHelpfulness() {
+		try {
+			return PartitionProtocol.readHelpfulness(request(PartitionProtocol.USERS_HELPFULNESS));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized long moviesCount() {
+		try {
+			return request(PartitionProtocol.MOVIES_COUNT).readLong();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized Set<String> moviesReviewedByAtLeast(int numOfUsers) {
+		try {
+			out.writeByte(PartitionProtocol.MOVIES_REVIEWED_BY_AT_LEAST);
+			out.writeInt(numOfUsers);
+			out.flush();
+			return PartitionProtocol.readIds(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			out.writeByte(PartitionProtocol.CLOSE);
+			out.flush();
+			socket.close();
+			worker.waitFor();
+		} catch (IOException e) {
+			worker.destroy();
+		} catch (InterruptedException e) {
+			worker.destroy();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// Sends request without arguments, returns the stream to read the answer from
+	private DataInputStream request(byte op) throws IOException {
+		out.writeByte(op);
+		out.flush();
+		return in;
+	}
+}
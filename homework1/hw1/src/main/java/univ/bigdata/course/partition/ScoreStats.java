@@ -0,0 +1,57 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.partition;
+
+/**
+ * Mergeable partial result of an average: keeps the sum and the count
+ * separately, so averages computed on different partitions can be combined
+ * without loosing precision.
+ */
+public class ScoreStats {
+
+    private double sum;
+
+    private long count;
+
+    public ScoreStats() {
+    }
+
+    public ScoreStats(double sum, long count) {
+        this.sum = sum;
+        this.count = count;
+    }
+
+    public void add(double score) {
+        sum += score;
+        count++;
+    }
+
+    public void merge(ScoreStats other) {
+        sum += other.sum;
+        count += other.count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double average() {
+        return sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return "ScoreStats{" +
+                "sum=" + sum +
+                ", count=" + count +
+                '}';
+    }
+}
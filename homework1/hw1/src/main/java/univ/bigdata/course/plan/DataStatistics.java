@@ -0,0 +1,106 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.plan;
+
+import java.util.function.Supplier;
+
+/**
+ * Statistics of the stored reviews used by @{@link QueryPlanner} to estimate
+ * the cost of the plans.
+ */
+public class DataStatistics {
+
+    private final long version;
+
+    private final long rows;
+
+    private final long distinctMovies;
+
+    private final long distinctUsers;
+
+    private final Supplier<long[]> wordsCounter;
+
+    // {vocabulary size, words}, counted on first use
+    private long[] wordsCount = null;
+
+    private final long sampleSize;
+
+    private final double sampleRate;
+
+    /**
+     * @param version - version of the data the statistics were computed on
+     * @param wordsCounter - counts {vocabulary size, total number of words} of the reviews text,
+     *                     called only by the plans which need them, as the text has to be split into words
+     * @param sampleSize - number of sampled reviews, 0 when sampling is not enabled
+     */
+    public DataStatistics(long version, long rows, long distinctMovies, long distinctUsers,
+                          Supplier<long[]> wordsCounter, long sampleSize, double sampleRate) {
+        this.version = version;
+        this.rows = rows;
+        this.distinctMovies = distinctMovies;
+        this.distinctUsers = distinctUsers;
+        this.wordsCounter = wordsCounter;
+        this.sampleSize = sampleSize;
+        this.sampleRate = sampleRate;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getDistinctMovies() {
+        return distinctMovies;
+    }
+
+    public long getDistinctUsers() {
+        return distinctUsers;
+    }
+
+    public long getVocabularySize() {
+        return wordsCount()[0];
+    }
+
+    /**
+     * @return - total number of words in the reviews text
+     */
+    public long getWords() {
+        return wordsCount()[1];
+    }
+
+    private synchronized long[] wordsCount() {
+        if (wordsCount == null) {
+            wordsCount = wordsCounter.get();
+        }
+        return wordsCount;
+    }
+
+    public long getSampleSize() {
+        return sampleSize;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DataStatistics{" +
+                "version=" + version +
+                ", rows=" + rows +
+                ", distinctMovies=" + distinctMovies +
+                ", distinctUsers=" + distinctUsers +
+                ", vocabularySize=" + ((wordsCount == null) ? "?" : wordsCount[0]) +
+                ", words=" + ((wordsCount == null) ? "?" : wordsCount[1]) +
+                ", sampleSize=" + sampleSize +
+                ", sampleRate=" + sampleRate +
+                '}';
+    }
+}
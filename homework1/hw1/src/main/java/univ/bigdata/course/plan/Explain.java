@@ -0,0 +1,92 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.plan;
+
+import java.util.Map;
+
+/**
+ * Record of a single planned query: the plan chosen by @{@link QueryPlanner},
+ * its estimated and actual cost and the estimates of the plans considered.
+ */
+public class Explain {
+
+    private final String query;
+
+    private final QueryHint hint;
+
+    private final PlanKind plan;
+
+    private final double estimatedMicros;
+
+    private final double actualMicros;
+
+    private final double estimatedError;
+
+    private final Map<PlanKind, Double> candidatesMicros;
+
+    /**
+     * @param candidatesMicros - estimated cost of every plan considered, in microseconds
+     */
+    public Explain(String query, QueryHint hint, PlanKind plan, double estimatedMicros, double actualMicros,
+                   double estimatedError, Map<PlanKind, Double> candidatesMicros) {
+        this.query = query;
+        this.hint = hint;
+        this.plan = plan;
+        this.estimatedMicros = estimatedMicros;
+        this.actualMicros = actualMicros;
+        this.estimatedError = estimatedError;
+        this.candidatesMicros = candidatesMicros;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public QueryHint getHint() {
+        return hint;
+    }
+
+    public PlanKind getPlan() {
+        return plan;
+    }
+
+    public double getEstimatedMicros() {
+        return estimatedMicros;
+    }
+
+    public double getActualMicros() {
+        return actualMicros;
+    }
+
+    /**
+     * @return - estimated relative error of the chosen plan, 0 for exact plans
+     */
+    public double getEstimatedError() {
+        return estimatedError;
+    }
+
+    public Map<PlanKind, Double> getCandidatesMicros() {
+        return candidatesMicros;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(query).append(" -> ").append(plan)
+                .append(String.format(" estimated %.1fus actual %.1fus", estimatedMicros, actualMicros));
+        if (estimatedError > 0) {
+            sb.append(String.format(" error %.2f%%", estimatedError * 100));
+        }
+        sb.append(" [");
+        String separator = "";
+        for (Map.Entry<PlanKind, Double> candidate : candidatesMicros.entrySet()) {
+            sb.append(separator).append(candidate.getKey()).append(String.format(" %.1fus", candidate.getValue()));
+            separator = ", ";
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,21 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.plan;
+
+/**
+ * The ways a query can be answered, from the most to the least accurate.
+ */
+public enum PlanKind {
+    /** Reads all the reviews */
+    FULL_SCAN,
+    /** Reads an aggregate structure (score columns, reviewers bitmaps), built first when missing */
+    AGGREGATE_INDEX,
+    /** Returns the result of the same query on the same data version */
+    CACHED_RESULT,
+    /** Estimates the result from the reviews sample */
+    SKETCH
+}
@@ -0,0 +1,307 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.plan;
+
+import univ.bigdata.course.IMoviesStorage;
+import univ.bigdata.course.MoviesStorage;
+import univ.bigdata.course.approx.ApproximateQueries;
+import univ.bigdata.course.approx.Estimate;
+import univ.bigdata.course.movie.Movie;
+import univ.bigdata.course.output.ScoreFormat;
+import univ.bigdata.course.partition.ScoreStats;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage which routes every query of a @{@link MoviesStorage} through a
+ * @{@link QueryPlanner}: each query offers its full scan plan, its plan over
+ * the aggregate structures (score columns, reviewers bitmaps) and, when
+ * sampling is enabled and the query supports it, its plan over the sample.
+ * The costs are estimated from the @{@link DataStatistics} of the storage by
+ * the per row costs below. The errors of the sample plans are computed from
+ * the moments of the sample while planning, only when the hint accepts
+ * approximate results, and the estimates themselves only when a sample plan
+ * is chosen. Estimates of less than @{@link #MIN_SAMPLES} sampled reviews are
+ * not used.
+ */
+public class PlannedMoviesStorage implements IMoviesStorage {
+
+	// Cost in nanoseconds of a single step of each kind of plan, measured by
+	// single executions over 20k-100k reviews of 200-1000 movies once the JIT
+	// compiled them, as every plan runs once per version of the data
+	static final double SCAN_ROW_NANOS = 30;
+	static final double HASH_ROW_NANOS = 120;
+	// parsing the "helpful/total" votes and summing them per user
+	static final double HELPFULNESS_ROW_NANOS = 1000;
+	static final double COLUMN_ROW_NANOS = 15;
+	// building the score columns, and the sets of reviewers of every movie
+	static final double BUILD_ROW_NANOS = 400;
+	static final double REVIEWERS_ROW_NANOS = 400;
+	static final double BITMAP_NANOS = 400;
+	static final double SORT_NANOS = 150;
+	// splitting the text and counting every word in a sorted map
+	static final double WORD_NANOS = 500;
+	static final double LIST_COMPARE_NANOS = 6;
+
+	// confidence of the sample plans errors
+	static final double CONFIDENCE = 0.95;
+	// the normal approximation of the intervals holds from about this number of samples
+	static final long MIN_SAMPLES = 30;
+
+	private final MoviesStorage storage;
+	private final QueryPlanner planner;
+	private final QueryHint hint;
+
+	/**
+	 * Plans the queries exactly, caching their results in the result cache of the storage.
+	 */
+	public PlannedMoviesStorage(final MoviesStorage storage) {
+		this(storage, new QueryPlanner(storage::resultCache, QueryPlanner.DEFAULT_EXPLAIN_HISTORY), QueryHint.EXACT);
+	}
+
+	public PlannedMoviesStorage(final MoviesStorage storage, final QueryPlanner planner, final QueryHint hint) {
+		this.storage = storage;
+		this.planner = planner;
+		this.hint = hint;
+	}
+
+	/**
+	 * @return - view of the same storage and planner which plans the queries with the given hint
+	 */
+	public PlannedMoviesStorage using(QueryHint hint) {
+		return new PlannedMoviesStorage(storage, planner, hint);
+	}
+
+	public QueryPlanner planner() {
+		return planner;
+	}
+
+	@Override
+	public double totalMoviesAverageScore() {
+		final DataStatistics stats = storage.statistics();
+		List<QueryPlan<Double>> plans = new ArrayList<QueryPlan<Double>>();
+		plans.add(QueryPlan.exact(PlanKind.FULL_SCAN, micros(stats.getRows() * SCAN_ROW_NANOS),
+				() -> storage.scanScoreStats(null).average()));
+		plans.add(QueryPlan.exact(PlanKind.AGGREGATE_INDEX, columnsMicros(stats, stats.getRows() * COLUMN_ROW_NANOS),
+				() -> storage.totalScoreStats().average()));
+		if (sketchAllowed(stats)) {
+			final ApproximateQueries approximate = approximate();
+			plans.add(new QueryPlan<Double>(PlanKind.SKETCH, micros(stats.getSampleSize() * HASH_ROW_NANOS),
+					approximate.totalMoviesAverageError(), () -> approximate.totalMoviesAverageScore().getValue()));
+		}
+		return planner.execute("totalMoviesAverageScore", "", stats.getVersion(), hint, plans);
+	}
+
+	@Override
+	public double totalMovieAverage(final String productId) {
+		final DataStatistics stats = storage.statistics();
+		List<QueryPlan<Double>> plans = new ArrayList<QueryPlan<Double>>();
+		plans.add(QueryPlan.exact(PlanKind.FULL_SCAN, micros(stats.getRows() * SCAN_ROW_NANOS),
+				() -> storage.scanScoreStats(productId).average()));
+		plans.add(QueryPlan.exact(PlanKind.AGGREGATE_INDEX, columnsMicros(stats, stats.getRows() * COLUMN_ROW_NANOS),
+				() -> storage.movieScoreStats(productId).average()));
+		if (sketchAllowed(stats)) {
+			final ApproximateQueries approximate = approximate();
+			plans.add(new QueryPlan<Double>(PlanKind.SKETCH, micros(HASH_ROW_NANOS),
+					approximate.movieAverageError(productId), () -> approximate.totalMovieAverage(productId).getValue()));
+		}
+		return planner.execute("totalMovieAverage", productId, stats.getVersion(), hint, plans);
+	}
+
+	@Override
+	public List<Movie> getTopKMoviesAverage(final long topK) {
+		final DataStatistics stats = storage.statistics();
+		final double rankNanos = sortNanos(stats.getDistinctMovies());
+		List<QueryPlan<List<Movie>>> plans = new ArrayList<QueryPlan<List<Movie>>>();
+		plans.add(QueryPlan.exact(PlanKind.FULL_SCAN, micros(stats.getRows() * HASH_ROW_NANOS + rankNanos),
+				() -> topKOf(storage.scanMovieScoreStats(), topK)));
+		plans.add(QueryPlan.exact(PlanKind.AGGREGATE_INDEX, columnsMicros(stats, stats.getRows() * COLUMN_ROW_NANOS + rankNanos),
+				() -> topKOf(storage.movieScoreStats(), topK)));
+		if (sketchAllowed(stats)) {
+			final ApproximateQueries approximate = approximate();
+			plans.add(new QueryPlan<List<Movie>>(PlanKind.SKETCH,
+					micros(stats.getSampleSize() * HASH_ROW_NANOS + sortNanos(Math.min(stats.getSampleSize(), stats.getDistinctMovies()))),
+					approximate.topKMoviesAverageError(Math.min(topK, stats.getDistinctMovies())), () -> {
+				final List<Movie> topKMovies = new LinkedList<Movie>();
+				for (Estimate estimate : approximate.getTopKMoviesAverage(topK)) {
+					topKMovies.add(new Movie(estimate.getKey(), estimate.getValue()));
+				}
+				return topKMovies;
+			}));
+		}
+		return planner.execute("getTopKMoviesAverage", String.valueOf(topK), stats.getVersion(), hint, plans,
+				PlannedMoviesStorage::copyMovies);
+	}
+
+	@Override
+	public Movie movieWithHighestAverage() {
+		return getTopKMoviesAverage(1).get(0);
+	}
+
+	@Override
+	public List<Movie> getMoviesPercentile(final double percent) {
+		final DataStatistics stats = storage.statistics();
+		final double rankNanos = sortNanos(stats.getDistinctMovies());
+		List<QueryPlan<List<Movie>>> plans = new ArrayList<QueryPlan<List<Movie>>>();
+		plans.add(QueryPlan.exact(PlanKind.FULL_SCAN, micros(stats.getRows() * HASH_ROW_NANOS + rankNanos),
+				() -> MoviesStorage.percentileOf(storage.scanMovieScoreStats(), percent)));
+		plans.add(QueryPlan.exact(PlanKind.AGGREGATE_INDEX, columnsMicros(stats, stats.getRows() * COLUMN_ROW_NANOS + rankNanos),
+				() -> MoviesStorage.percentileOf(storage.movieScoreStats(), percent)));
+		return planner.execute("getMoviesPercentile", String.valueOf(percent), stats.getVersion(), hint, plans,
+				PlannedMoviesStorage::copyMovies);
+	}
+
+	@Override
+	public String mostReviewedProduct() {
+		Map<String, Long> mostReviewed = reviewCountPerMovieTopKMovies(1);
+		return mostReviewed.isEmpty() ? null : mostReviewed.keySet().iterator().next();
+	}
+
+	@Override
+	public Map<String, Long> reviewCountPerMovieTopKMovies(final int topK) {
+		final DataStatistics stats = storage.statistics();
+		final double rankNanos = sortNanos(stats.getDistinctMovies());
+		List<QueryPlan<Map<String, Long>>> plans = new ArrayList<QueryPlan<Map<String, Long>>>();
+		plans.add(QueryPlan.exact(PlanKind.FULL_SCAN, micros(stats.getRows() * HASH_ROW_NANOS + rankNanos),
+				() -> MoviesStorage.topKByCount(storage.reviewCounts(), topK)));
+		plans.add(QueryPlan.exact(PlanKind.AGGREGATE_INDEX, columnsMicros(stats, stats.getRows() * COLUMN_ROW_NANOS + rankNanos),
+				() -> {
+			Map<String, Long> counts = new LinkedHashMap<String, Long>();
+			for (Map.Entry<String, ScoreStats> entry : storage.movieScoreStats().entrySet()) {
+				counts.put(entry.getKey(), entry.getValue().getCount());
+			}
+			return MoviesStorage.topKByCount(counts, topK);
+		}));
+		if (sketchAllowed(stats)) {
+			final ApproximateQueries approximate = approximate();
+			plans.add(new QueryPlan<Map<String, Long>>(PlanKind.SKETCH,
+					micros(stats.getSampleSize() * HASH_ROW_NANOS + sortNanos(Math.min(stats.getSampleSize(), stats.getDistinctMovies()))),
+					approximate.topKReviewCountsError((int) Math.min(topK, stats.getDistinctMovies())), () -> {
+				final Map<String, Long> topKMap = new LinkedHashMap<String, Long>();
+				for (Estimate estimate : approximate.reviewCountPerMovieTopKMovies(topK)) {
+					topKMap.put(estimate.getKey(), Math.round(estimate.getValue()));
+				}
+				return topKMap;
+			}));
+		}
+		return planner.execute("reviewCountPerMovieTopKMovies", String.valueOf(topK), stats.getVersion(), hint, plans,
+				PlannedMoviesStorage::copyEntries);
+	}
+
+	@Override
+	public String mostPopularMovieReviewedByKUsers(final int numOfUsers) {
+		final DataStatistics stats = storage.statistics();
+		List<QueryPlan<String>> plans = new ArrayList<QueryPlan<String>>();
+		plans.add(QueryPlan.exact(PlanKind.FULL_SCAN, micros(stats.getRows() * (HASH_ROW_NANOS + REVIEWERS_ROW_NANOS)),
+				() -> MoviesStorage.bestAverageAmong(storage.scanMovieScoreStats(),
+						storage.scanMoviesReviewedByAtLeast(numOfUsers))));
+		final double reviewersBuildNanos = storage.hasReviewerIndex() ? 0 : stats.getRows() * REVIEWERS_ROW_NANOS;
+		plans.add(QueryPlan.exact(PlanKind.AGGREGATE_INDEX, columnsMicros(stats, reviewersBuildNanos
+						+ stats.getDistinctMovies() * BITMAP_NANOS + stats.getRows() * COLUMN_ROW_NANOS),
+				() -> MoviesStorage.bestAverageAmong(storage.movieScoreStats(),
+						storage.reviewerIndex().moviesReviewedByAtLeast(numOfUsers))));
+		return planner.execute("mostPopularMovieReviewedByKUsers", String.valueOf(numOfUsers), stats.getVersion(), hint, plans);
+	}
+
+	@Override
+	public Map<String, Long> moviesReviewWordsCount(final int topK) {
+		final DataStatistics stats = storage.statistics();
+		List<QueryPlan<Map<String, Long>>> plans = new ArrayList<QueryPlan<Map<String, Long>>>();
+		plans.add(QueryPlan.exact(PlanKind.FULL_SCAN, micros(stats.getRows() * SCAN_ROW_NANOS
+						+ stats.getWords() * WORD_NANOS + sortNanos(stats.getVocabularySize())),
+				() -> MoviesStorage.topKWords(storage.wordsCount(null), topK)));
+		return planner.execute("moviesReviewWordsCount", String.valueOf(topK), stats.getVersion(), hint, plans,
+				PlannedMoviesStorage::copyEntries);
+	}
+
+	@Override
+	public Map<String, Long> topYMoviewsReviewTopXWordsCount(final int topMovies, final int topWords) {
+		final Map<String, Long> mostReviewedKMovies = reviewCountPerMovieTopKMovies(topMovies);
+		final DataStatistics stats = storage.statistics();
+		// only the words of the chosen movies are counted
+		final double share = (stats.getDistinctMovies() == 0) ? 0 : Math.min(1.0, (double) topMovies / stats.getDistinctMovies());
+		List<QueryPlan<Map<String, Long>>> plans = new ArrayList<QueryPlan<Map<String, Long>>>();
+		plans.add(QueryPlan.exact(PlanKind.FULL_SCAN, micros(stats.getRows() * HASH_ROW_NANOS
+						+ share * stats.getWords() * WORD_NANOS + sortNanos((long) (share * stats.getVocabularySize()))),
+				() -> MoviesStorage.topXWords(storage.wordsCount(mostReviewedKMovies.keySet()), topWords)));
+		return planner.execute("topYMoviewsReviewTopXWordsCount", topMovies + "," + topWords, stats.getVersion(), hint, plans,
+				PlannedMoviesStorage::copyEntries);
+	}
+
+	@Override
+	public Map<String, Double> topKHelpfullUsers(final int k) {
+		final DataStatistics stats = storage.statistics();
+		List<QueryPlan<Map<String, Double>>> plans = new ArrayList<QueryPlan<Map<String, Double>>>();
+		plans.add(QueryPlan.exact(PlanKind.FULL_SCAN, micros(stats.getRows() * HELPFULNESS_ROW_NANOS
+						+ sortNanos(stats.getDistinctUsers())),
+				() -> MoviesStorage.topKHelpfulness(storage.usersHelpfulness(), k)));
+		return planner.execute("topKHelpfullUsers", String.valueOf(k), stats.getVersion(), hint, plans,
+				PlannedMoviesStorage::copyEntries);
+	}
+
+	@Override
+	public long moviesCount() {
+		final DataStatistics stats = storage.statistics();
+		List<QueryPlan<Long>> plans = new ArrayList<QueryPlan<Long>>();
+		// every review is compared with the list of movies seen so far
+		plans.add(QueryPlan.exact(PlanKind.FULL_SCAN,
+				micros(stats.getRows() * (SCAN_ROW_NANOS + stats.getDistinctMovies() / 2.0 * LIST_COMPARE_NANOS)),
+				() -> storage.scanMoviesCount()));
+		plans.add(QueryPlan.exact(PlanKind.AGGREGATE_INDEX, columnsMicros(stats, 0),
+				() -> (long) storage.scoreColumns().movies().size()));
+		return planner.execute("moviesCount", "", stats.getVersion(), hint, plans);
+	}
+
+	private static List<Movie> topKOf(Map<String, ScoreStats> statsPerMovie, long topK) {
+		Movie sortedMovies[] = MoviesStorage.rankByAverage(statsPerMovie);
+		List<Movie> topKMovies = new LinkedList<Movie>();
+		for (int i = 0; i < topK && i < sortedMovies.length; i++) {
+			sortedMovies[i].setScore(ScoreFormat.round(sortedMovies[i].getScore()));
+			topKMovies.add(sortedMovies[i]);
+		}
+		return topKMovies;
+	}
+
+	// cost of a query over the score columns, including building them when they don't exist yet
+	private double columnsMicros(DataStatistics stats, double queryNanos) {
+		return micros((storage.hasScoreColumns() ? 0 : stats.getRows() * BUILD_ROW_NANOS) + queryNanos);
+	}
+
+	private static double sortNanos(long n) {
+		return (n < 2) ? 0 : n * (Math.log(n) / Math.log(2)) * SORT_NANOS;
+	}
+
+	private static double micros(double nanos) {
+		return nanos / 1000.0;
+	}
+
+	// the sample plans are never chosen when the hint asks for exact results, unless everything is sampled
+	private boolean sketchAllowed(DataStatistics stats) {
+		return stats.getSampleSize() > 0 && (hint.getMaxRelativeError() > 0 || stats.getSampleRate() >= 1);
+	}
+
+	private ApproximateQueries approximate() {
+		return storage.approximate(CONFIDENCE, MIN_SAMPLES);
+	}
+
+	// results are copied, so the results cached by the planner are never modified by the caller
+	private static List<Movie> copyMovies(List<Movie> movies) {
+		List<Movie> copy = new LinkedList<Movie>();
+		for (Movie movie : movies) {
+			copy.add(new Movie(movie.getProductId(), movie.getScore()));
+		}
+		return copy;
+	}
+
+	private static <V> Map<String, V> copyEntries(Map<String, V> entries) {
+		return new LinkedHashMap<String, V>(entries);
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.plan;
+
+/**
+ * Accuracy and latency requirements of a query. The accuracy is a hard limit,
+ * plans which may be less accurate are never chosen. The latency budget is a
+ * preference: the most accurate plan estimated to fit in it is chosen, and the
+ * cheapest plan when none does.
+ */
+public class QueryHint {
+
+    public static final long NO_LATENCY_BUDGET = Long.MAX_VALUE;
+
+    /** Exact results only, the cheapest exact plan */
+    public static final QueryHint EXACT = new QueryHint(0, NO_LATENCY_BUDGET);
+
+    private final double maxRelativeError;
+
+    private final long latencyBudgetMicros;
+
+    /**
+     * @param maxRelativeError - largest accepted relative error of the result, 0 for exact results
+     * @param latencyBudgetMicros - preferred upper limit of the execution time, in microseconds
+     */
+    public QueryHint(double maxRelativeError, long latencyBudgetMicros) {
+        if (maxRelativeError < 0 || latencyBudgetMicros <= 0) {
+            throw new IllegalArgumentException("Relative error must not be negative and latency budget must be positive");
+        }
+        this.maxRelativeError = maxRelativeError;
+        this.latencyBudgetMicros = latencyBudgetMicros;
+    }
+
+    public double getMaxRelativeError() {
+        return maxRelativeError;
+    }
+
+    public long getLatencyBudgetMicros() {
+        return latencyBudgetMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryHint{" +
+                "maxRelativeError=" + maxRelativeError +
+                ", latencyBudgetMicros=" + latencyBudgetMicros +
+                '}';
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.plan;
+
+import java.util.function.Supplier;
+
+/**
+ * One way to answer a query, with its estimated cost and accuracy.
+ *
+ * @param <T> - type of the query result
+ */
+public class QueryPlan<T> {
+
+	final PlanKind kind;
+	final double estimatedMicros;
+	final double estimatedError;
+	final Supplier<T> execution;
+
+	/**
+	 * @param estimatedMicros - estimated execution time, in microseconds
+	 * @param estimatedError - estimated relative error of the result, 0 for exact plans
+	 */
+	public QueryPlan(PlanKind kind, double estimatedMicros, double estimatedError, Supplier<T> execution) {
+		this.kind = kind;
+		this.estimatedMicros = estimatedMicros;
+		this.estimatedError = estimatedError;
+		this.execution = execution;
+	}
+
+	public static <T> QueryPlan<T> exact(PlanKind kind, double estimatedMicros, Supplier<T> execution) {
+		return new QueryPlan<T>(kind, estimatedMicros, 0, execution);
+	}
+}
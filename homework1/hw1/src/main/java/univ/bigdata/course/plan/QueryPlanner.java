@@ -0,0 +1,197 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.plan;
+
+import univ.bigdata.course.cache.ResultCache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Chooses and executes the cheapest plan of a query which satisfies its
+ * @{@link QueryHint}. Besides the given plans, the result of the same query on
+ * the same data version, kept in a @{@link ResultCache}, is offered as a
+ * cached plan. The cache is the one of the planned storage, so both are bounded
+ * together and invalidated when the data changes. The estimated costs are corrected by the ratio of actual to
+ * estimated cost observed for the same query and plan kind, set by the first
+ * execution and then moved towards the later ones, and every
+ * execution is recorded as an @{@link Explain}. Only choosing the plan and
+ * recording its execution are serialized, the plans themselves run
+ * concurrently.
+ */
+public class QueryPlanner {
+
+	public static final int DEFAULT_EXPLAIN_HISTORY = 256;
+
+	static final double CACHE_HIT_MICROS = 1;
+	// weight of the last execution in the cost correction
+	private static final double CORRECTION_WEIGHT = 0.3;
+	private static final double MAX_CORRECTION_STEP = 16;
+
+	// result of a query with the error of the plan which computed it
+	private static class CachedResult {
+		final Object value;
+		final double error;
+
+		CachedResult(Object value, double error) {
+			this.value = value;
+			this.error = error;
+		}
+	}
+
+	private final int explainHistory;
+	private final Supplier<ResultCache> cache;
+	private final Map<String, Double> corrections = new HashMap<String, Double>();
+	private final Deque<Explain> explains = new ArrayDeque<Explain>();
+
+	/**
+	 * @param cache - keeps the results of the executed plans, null to disable caching
+	 * @param explainHistory - number of last executions kept for @{@link #explains()}
+	 */
+	public QueryPlanner(final ResultCache cache, final int explainHistory) {
+		this(() -> cache, explainHistory);
+	}
+
+	/**
+	 * @param cache - gives the current cache of the results, such as the one of a storage
+	 *              which may be replaced, null to disable caching
+	 */
+	public QueryPlanner(final Supplier<ResultCache> cache, final int explainHistory) {
+		this.explainHistory = explainHistory;
+		this.cache = cache;
+	}
+
+	/**
+	 * Executes a query which result can't be modified, such as a number or a string.
+	 *
+	 * @see #execute(String, String, long, QueryHint, List, UnaryOperator)
+	 */
+	public <T> T execute(String name, String arguments, long version, QueryHint hint, List<QueryPlan<T>> plans) {
+		return execute(name, arguments, version, hint, plans, UnaryOperator.identity());
+	}
+
+	/**
+	 * @param name - name of the query, plans of queries with the same name are assumed to cost alike
+	 * @param arguments - arguments of the query, results are reused for the same name and arguments
+	 * @param version - version of the data, results of other versions are not reused
+	 * @param plans - the possible plans, at least one of them exact
+	 * @param copy - copies a result, the caller gets a copy so the cached result is never modified
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(String name, String arguments, long version, QueryHint hint,
+						 List<QueryPlan<T>> plans, UnaryOperator<T> copy) {
+		// the parentheses keep the keys apart from the keys of the storage queries in the same cache
+		final String query = name + "(" + arguments + ")";
+		final List<QueryPlan<T>> candidates = new ArrayList<QueryPlan<T>>(plans);
+		final ResultCache results = cache.get();
+		final CachedResult cached = (results == null) ? null : results.get(query, version);
+		if (cached != null) {
+			candidates.add(new QueryPlan<T>(PlanKind.CACHED_RESULT, CACHE_HIT_MICROS, cached.error, () -> (T) cached.value));
+		}
+
+		final Map<PlanKind, Double> candidatesMicros = new EnumMap<PlanKind, Double>(PlanKind.class);
+		final QueryPlan<T> chosen;
+		synchronized (this) {
+			for (QueryPlan<T> plan : candidates) {
+				candidatesMicros.put(plan.kind, estimate(name, plan));
+			}
+			chosen = choose(name, candidates, hint);
+		}
+
+		final long start = System.nanoTime();
+		final T result = chosen.execution.get();
+		final double actualMicros = (System.nanoTime() - start) / 1000.0;
+
+		if (results != null && chosen.kind != PlanKind.CACHED_RESULT) {
+			results.put(query, version, new CachedResult(result, chosen.estimatedError), weightOf(result));
+		}
+		synchronized (this) {
+			if (chosen.kind != PlanKind.CACHED_RESULT) {
+				final String key = correctionKey(name, chosen.kind);
+				final Double previous = corrections.get(key);
+				final double observed = Math.max(actualMicros, CACHE_HIT_MICROS) / Math.max(chosen.estimatedMicros, CACHE_HIT_MICROS);
+				if (previous == null) {
+					// the first execution is the only measurement, it replaces the static estimate
+					corrections.put(key, observed);
+				} else {
+					// later a single slow execution (garbage collection, recompilation) moves the correction only so far
+					final double ratio = Math.min(previous * MAX_CORRECTION_STEP, Math.max(previous / MAX_CORRECTION_STEP, observed));
+					corrections.put(key, (1 - CORRECTION_WEIGHT) * previous + CORRECTION_WEIGHT * ratio);
+				}
+			}
+			explains.addLast(new Explain(query, hint, chosen.kind, candidatesMicros.get(chosen.kind), actualMicros,
+					chosen.estimatedError, candidatesMicros));
+			if (explains.size() > explainHistory) {
+				explains.removeFirst();
+			}
+		}
+		return copy.apply(result);
+	}
+
+	/**
+	 * @return - the last executions, oldest first
+	 */
+	public synchronized List<Explain> explains() {
+		return new ArrayList<Explain>(explains);
+	}
+
+	private <T> QueryPlan<T> choose(String name, List<QueryPlan<T>> plans, QueryHint hint) {
+		QueryPlan<T> cheapest = null;
+		QueryPlan<T> inBudget = null;
+		QueryPlan<T> mostAccurate = null;
+		for (QueryPlan<T> plan : plans) {
+			if (mostAccurate == null || plan.estimatedError < mostAccurate.estimatedError) {
+				mostAccurate = plan;
+			}
+			if (plan.estimatedError > hint.getMaxRelativeError()) {
+				continue;
+			}
+			final double micros = estimate(name, plan);
+			if (cheapest == null || micros < estimate(name, cheapest)) {
+				cheapest = plan;
+			}
+			if (micros <= hint.getLatencyBudgetMicros() && (inBudget == null
+					|| plan.estimatedError < inBudget.estimatedError
+					|| (plan.estimatedError == inBudget.estimatedError && micros < estimate(name, inBudget)))) {
+				inBudget = plan;
+			}
+		}
+		if (cheapest == null) {
+			// no plan is accurate enough, the most accurate one is the closest
+			return mostAccurate;
+		}
+		return (hint.getLatencyBudgetMicros() != QueryHint.NO_LATENCY_BUDGET && inBudget != null) ? inBudget : cheapest;
+	}
+
+	private double estimate(String name, QueryPlan<?> plan) {
+		final Double correction = corrections.get(correctionKey(name, plan.kind));
+		return (correction == null) ? plan.estimatedMicros : plan.estimatedMicros * correction;
+	}
+
+	// number of elements of collection results, for the cache bounds
+	private static long weightOf(Object result) {
+		if (result instanceof Collection) {
+			return Math.max(1, ((Collection<?>) result).size());
+		}
+		if (result instanceof Map) {
+			return Math.max(1, ((Map<?, ?>) result).size());
+		}
+		return 1;
+	}
+
+	private static String correctionKey(String name, PlanKind kind) {
+		return name + "/" + kind;
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.providers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import univ.bigdata.course.movie.MovieReview;
+
+/**
+ * Reads the reviews of several shard files in parallel, every shard by its
+ * own reader thread which also parses it, with up to the given number of
+ * shards read at once. The reviews of the shards being read are returned
+ * in blocks, round robin in the order of the shard files, and a shard which
+ * ends is replaced by the next one, so the order of the reviews depends only
+ * on the shard files and not on the speed of the readers. Every shard is
+ * buffered by a bounded @{@link RingBuffer}.
+ */
+public class CompositeMoviesProvider implements MoviesProvider, AutoCloseable {
+
+	public static final int DEFAULT_BLOCK_REVIEWS = 1024;
+	public static final int DEFAULT_BUFFER_BLOCKS = 4;
+
+	private class Shard implements Runnable {
+		final File file;
+		final RingBuffer<MovieReview[]> blocks = new RingBuffer<MovieReview[]>(bufferBlocks);
+		final Thread thread;
+		volatile Throwable failure = null;
+		volatile long reviews = 0;
+		volatile long readMillis = 0;
+
+		Shard(File file) {
+			this.file = file;
+			this.thread = new Thread(this, "shard-reader-" + file.getName());
+			thread.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			final long start = System.currentTimeMillis();
+			try {
+				// the provider is closed also when the shard is not read to the end
+				if (file.getName().endsWith(".gz")) {
+					try (PipelinedMoviesProvider provider = PipelinedMoviesProvider.open(file.getPath(), 1)) {
+						read(provider);
+					}
+				} else {
+					try (FileIOMoviesProvider provider = new FileIOMoviesProvider(file.getPath())) {
+						read(provider);
+					}
+				}
+			} catch (Throwable e) {
+				failure = e;
+			} finally {
+				readMillis = System.currentTimeMillis() - start;
+				blocks.close();
+			}
+		}
+
+		private void read(MoviesProvider provider) throws InterruptedException {
+			MovieReview[] block = new MovieReview[blockReviews];
+			int size = 0;
+			long count = 0;
+			while (provider.hasMovie()) {
+				block[size++] = provider.getMovie();
+				count++;
+				if (size == blockReviews) {
+					if (!blocks.put(block)) {
+						return;
+					}
+					block = new MovieReview[blockReviews];
+					size = 0;
+				}
+			}
+			if (size > 0) {
+				MovieReview[] last = new MovieReview[size];
+				System.arraycopy(block, 0, last, 0, size);
+				blocks.put(last);
+			}
+			reviews = count;
+		}
+	}
+
+	private final List<File> files;
+	private final int concurrency;
+	private final int blockReviews;
+	private final int bufferBlocks;
+
+	// shards being read, in the order their blocks are returned
+	private final List<Shard> active = new ArrayList<Shard>();
+	private final List<ShardStatistics> statistics = new ArrayList<ShardStatistics>();
+	private int nextFile = 0;
+	private int turn = 0;
+	private MovieReview[] current = null;
+	private int position = 0;
+
+	public CompositeMoviesProvider(List<File> files, int concurrency) {
+		this(files, concurrency, DEFAULT_BLOCK_REVIEWS, DEFAULT_BUFFER_BLOCKS);
+	}
+
+	/**
+	 * @param files - the shard files, their reviews are returned in this order
+	 * @param concurrency - maximal number of shards read at once
+	 * @param blockReviews - number of reviews taken from a shard before moving to the next one
+	 * @param bufferBlocks - number of blocks read ahead of every shard
+	 */
+	public CompositeMoviesProvider(List<File> files, int concurrency, int blockReviews, int bufferBlocks) {
+		if (concurrency <= 0 || blockReviews <= 0) {
+			throw new IllegalArgumentException("Concurrency and block reviews must be positive");
+		}
+		this.files = new ArrayList<File>(files);
+		this.concurrency = concurrency;
+		this.blockReviews = blockReviews;
+		this.bufferBlocks = bufferBlocks;
+		while (active.size() < concurrency && nextFile < this.files.size()) {
+			startNextShard();
+		}
+	}
+
+	/**
+	 * Finds the shard files of a directory (the files directly in it) or of a
+	 * glob pattern, such as "exports/2016-*&#47;reviews-*.txt", sorted by path.
+	 */
+	public static List<File> shardsOf(String directoryOrGlob) throws IOException {
+		final File directory = new File(directoryOrGlob);
+		if (directory.isDirectory()) {
+			try (Stream<Path> paths = Files.list(directory.toPath())) {
+				return sorted(paths.filter(Files::isRegularFile));
+			}
+		}
+		// walk from the deepest directory without wildcards
+		Path base = Paths.get("");
+		for (Path part : Paths.get(directoryOrGlob)) {
+			if (isGlob(part.toString())) {
+				break;
+			}
+			base = base.resolve(part);
+		}
+		if (directoryOrGlob.startsWith(File.separator)) {
+			base = Paths.get(File.separator).resolve(base);
+		}
+		if (!Files.isDirectory(base)) {
+			return Collections.emptyList();
+		}
+		final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + directoryOrGlob);
+		try (Stream<Path> paths = Files.walk(base)) {
+			return sorted(paths.filter(path -> Files.isRegularFile(path) && matcher.matches(path)));
+		}
+	}
+
+	public static boolean isGlob(String path) {
+		return path.indexOf('*') >= 0 || path.indexOf('?') >= 0 || path.indexOf('[') >= 0 || path.indexOf('{') >= 0;
+	}
+
+	private static List<File> sorted(Stream<Path> paths) {
+		return paths.sorted().map(Path::toFile).collect(Collectors.toList());
+	}
+
+	private void startNextShard() {
+		Shard shard = new Shard(files.get(nextFile++));
+		active.add(shard);
+		shard.thread.start();
+	}
+
+	@Override
+	public boolean hasMovie() {
+		try {
+			while (current == null || position == current.length) {
+				if (active.isEmpty()) {
+					return false;
+				}
+				turn %= active.size();
+				final Shard shard = active.get(turn);
+				current = shard.blocks.take();
+				position = 0;
+				if (current != null) {
+					turn++;
+					continue;
+				}
+				if (shard.failure != null) {
+					throw new IllegalStateException("Reading shard " + shard.file + " failed", shard.failure);
+				}
+				statistics.add(new ShardStatistics(shard.file, shard.file.length(), shard.reviews, shard.readMillis));
+				// the next shard joins the end of the rotation
+				active.remove(turn);
+				if (nextFile < files.size()) {
+					startNextShard();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public MovieReview getMovie() {
+		if (!hasMovie()) {
+			return null;
+		}
+		final MovieReview review = current[position];
+		current[position++] = null;
+		return review;
+	}
+
+	/**
+	 * @return - statistics of the shards read to the end so far, in the order they ended
+	 */
+	public List<ShardStatistics> shardStatistics() {
+		return Collections.unmodifiableList(statistics);
+	}
+
+	/**
+	 * Stops the shard readers, needed only when the reviews are not read to the end.
+	 */
+	@Override
+	public void close() {
+		for (Shard shard : active) {
+			shard.blocks.close();
+			shard.thread.interrupt();
+		}
+	}
+}
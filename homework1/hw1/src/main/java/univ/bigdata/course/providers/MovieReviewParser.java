@@ -0,0 +1,79 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.providers;
+
+import java.util.Date;
+import java.util.HashMap;
+
+import univ.bigdata.course.movie.Movie;
+import univ.bigdata.course.movie.MovieReview;
+
+/**
+ * Parses a single line of the movies reviews file into @{@link MovieReview}.
+ * Holds no state besides the fields order, so it may be shared between threads.
+ */
+public class MovieReviewParser {
+
+	private final HashMap<String, String> fileKeysNextKey = new HashMap<String, String>();
+
+	private static class Titles {
+		static final String PRODUCT_ID = "product/productId: ";
+		static final String USER_ID = "\treview/userId: ";
+		static final String PROFILE_NAME = "\treview/profileName: ";
+		static final String HELPFULNESS = "\treview/helpfulness: ";
+		static final String SCORE = "\treview/score: ";
+		static final String TIME = "\treview/time: ";
+		static final String SUMMARY = "\treview/summary: ";
+		static final String TEXT = "\treview/text: ";
+	}
+
+	public MovieReviewParser() {
+		fileKeysNextKey.put(Titles.PRODUCT_ID, Titles.USER_ID);
+		fileKeysNextKey.put(Titles.USER_ID, Titles.PROFILE_NAME);
+		fileKeysNextKey.put(Titles.PROFILE_NAME, Titles.HELPFULNESS);
+		fileKeysNextKey.put(Titles.HELPFULNESS, Titles.SCORE);
+		fileKeysNextKey.put(Titles.SCORE, Titles.TIME);
+		fileKeysNextKey.put(Titles.TIME, Titles.SUMMARY);
+		fileKeysNextKey.put(Titles.SUMMARY, Titles.TEXT);
+		// Not defining review-text to point to null, as it behaves this way anyway when the key is not set
+	}
+
+	private String getFieldValueFromLine(String line, String fieldTitle) {
+		String[] parts = line.split(fieldTitle);
+		String value = parts[1];
+		String nextKey = fileKeysNextKey.get(fieldTitle);
+		if (nextKey != null) {
+			value = (value.split(nextKey))[0];
+		}
+		return value.trim();
+	}
+
+	public MovieReview parse(String line) {
+		MovieReview mr = new MovieReview();
+		String productId = getFieldValueFromLine(line, Titles.PRODUCT_ID);
+		String userId = getFieldValueFromLine(line, Titles.USER_ID);
+		String profileName = getFieldValueFromLine(line, Titles.PROFILE_NAME);
+		String helpfulness = getFieldValueFromLine(line, Titles.HELPFULNESS);
+		double score = Double.parseDouble(getFieldValueFromLine(line, Titles.SCORE));
+		long time = Long.parseLong(getFieldValueFromLine(line, Titles.TIME));
+		String summary = getFieldValueFromLine(line, Titles.SUMMARY);
+		String reviewText = getFieldValueFromLine(line, Titles.TEXT);
+
+		Movie movie = new Movie();
+		movie.setProductId(productId);
+		movie.setScore(score);
+		mr.setHelpfulness(helpfulness);
+		mr.setMovie(movie);
+		mr.setProfileName(profileName);
+		mr.setTimestamp(new Date(time * 1000));
+		mr.setUserId(userId);
+		mr.setReview(reviewText);
+		mr.setSummary(summary);
+
+		return mr;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.providers;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import univ.bigdata.course.movie.MovieReview;
+
+/**
+ * Reads the reviews of a stream that can only be read once from the start to
+ * the end (standard input, pipe, compressed file) in three stages: a single
+ * reader thread cuts the input into blocks of lines, a pool of parser threads
+ * turns the blocks into @{@link MovieReview}s, and the caller of
+ * @{@link #getMovie()} (usually the @{@link univ.bigdata.course.MoviesStorage}
+ * constructor) loads them. The reader and the parsers are connected by a
+ * bounded @{@link RingBuffer} and the parsers and the loader by a bounded
+ * @{@link ReorderBuffer}, so the memory in flight is limited, the reader waits
+ * for the parsers when they fall behind and the parsers wait for a stalled one
+ * instead of getting too far ahead of it. The reviews are returned in the
+ * order of the input.
+ */
+public class PipelinedMoviesProvider implements MoviesProvider, AutoCloseable {
+
+	public static final int DEFAULT_BLOCK_LINES = 1024;
+	public static final int DEFAULT_BUFFER_BLOCKS = 16;
+
+	private static class Block<T> {
+		final long sequence;
+		final T[] items;
+		final int size;
+
+		Block(long sequence, T[] items, int size) {
+			this.sequence = sequence;
+			this.items = items;
+			this.size = size;
+		}
+	}
+
+	private final BufferedReader input;
+	private final int blockLines;
+	private final RingBuffer<Block<String>> lines;
+	private final ReorderBuffer<Block<MovieReview>> parsed;
+	private final List<Thread> threads = new ArrayList<Thread>();
+	private final AtomicInteger runningParsers;
+	private volatile Throwable failure = null;
+
+	private Block<MovieReview> current = null;
+	private int position = 0;
+	private MovieReview next = null;
+
+	public PipelinedMoviesProvider(InputStream in, int parserThreads) {
+		this(in, parserThreads, DEFAULT_BLOCK_LINES, DEFAULT_BUFFER_BLOCKS);
+	}
+
+	/**
+	 * @param parserThreads - number of threads parsing the lines
+	 * @param blockLines - number of lines passed between the stages at once
+	 * @param bufferBlocks - number of blocks each buffer holds
+	 */
+	public PipelinedMoviesProvider(InputStream in, int parserThreads, int blockLines, int bufferBlocks) {
+		if (parserThreads <= 0 || blockLines <= 0) {
+			throw new IllegalArgumentException("Parser threads and block lines must be positive");
+		}
+		this.input = new BufferedReader(new InputStreamReader(in));
+		this.blockLines = blockLines;
+		this.lines = new RingBuffer<Block<String>>(bufferBlocks);
+		this.parsed = new ReorderBuffer<Block<MovieReview>>(bufferBlocks);
+		this.runningParsers = new AtomicInteger(parserThreads);
+
+		threads.add(new Thread(this::read, "reviews-reader"));
+		final MovieReviewParser parser = new MovieReviewParser();
+		for (int i = 0; i < parserThreads; i++) {
+			threads.add(new Thread(() -> parse(parser), "reviews-parser-" + i));
+		}
+		for (Thread thread : threads) {
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Opens the given source, "-" for the standard input, files ending with
+	 * ".gz" are decompressed.
+	 */
+	public static PipelinedMoviesProvider open(String source, int parserThreads) throws IOException {
+		InputStream in = "-".equals(source) ? System.in : new FileInputStream(source);
+		if (source.endsWith(".gz")) {
+			try {
+				in = new GZIPInputStream(in, 1 << 16);
+			} catch (IOException e) {
+				// not compressed or truncated, the file was opened all the same
+				in.close();
+				throw e;
+			}
+		}
+		return new PipelinedMoviesProvider(in, parserThreads);
+	}
+
+	private void read() {
+		try {
+			long sequence = 0;
+			String[] block = new String[blockLines];
+			int size = 0;
+			String line;
+			while ((line = input.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				block[size++] = line;
+				if (size == blockLines) {
+					if (!lines.put(new Block<String>(sequence++, block, size))) {
+						return;
+					}
+					block = new String[blockLines];
+					size = 0;
+				}
+			}
+			if (size > 0) {
+				lines.put(new Block<String>(sequence, block, size));
+			}
+		} catch (Throwable e) {
+			fail(e);
+		} finally {
+			lines.close();
+			try {
+				input.close();
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	private void parse(MovieReviewParser parser) {
+		try {
+			Block<String> block;
+			while ((block = lines.take()) != null) {
+				final MovieReview[] reviews = new MovieReview[block.size];
+				for (int i = 0; i < block.size; i++) {
+					reviews[i] = parser.parse(block.items[i]);
+				}
+				if (!parsed.put(block.sequence, new Block<MovieReview>(block.sequence, reviews, block.size))) {
+					return;
+				}
+			}
+		} catch (Throwable e) {
+			fail(e);
+		} finally {
+			// the last parser to finish ends the stream
+			if (runningParsers.decrementAndGet() == 0) {
+				parsed.close();
+			}
+		}
+	}
+
+	private void fail(Throwable e) {
+		if (failure == null) {
+			failure = e;
+		}
+		lines.close();
+		parsed.close();
+	}
+
+	private void checkFailure() {
+		final Throwable e = failure;
+		if (e instanceof IOException) {
+			throw new UncheckedIOException((IOException) e);
+		}
+		if (e != null) {
+			throw new IllegalStateException("Reading the reviews failed", e);
+		}
+	}
+
+	@Override
+	public boolean hasMovie() {
+		if (next != null) {
+			return true;
+		}
+		try {
+			while (current == null || position == current.size) {
+				current = parsed.take();
+				if (current == null) {
+					checkFailure();
+					return false;
+				}
+				position = 0;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new IllegalStateException("Interrupted while reading the reviews", e);
+		}
+		next = current.items[position];
+		current.items[position++] = null;
+		return true;
+	}
+
+	@Override
+	public MovieReview getMovie() {
+		if (!hasMovie()) {
+			return null;
+		}
+		final MovieReview review = next;
+		next = null;
+		return review;
+	}
+
+	/**
+	 * Stops the reading threads, needed only when the reviews are not read to the
+	 * end. The reader closes the input as it stops.
+	 */
+	@Override
+	public void close() {
+		lines.close();
+		parsed.close();
+		for (Thread thread : threads) {
+			thread.interrupt();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.providers;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded buffer between the parsers of @{@link PipelinedMoviesProvider} and
+ * its loader, which hands out the elements in the order of their sequence
+ * numbers whatever order they were put in. Only the window of capacity
+ * sequences starting at the next one to take is accepted, a producer of an
+ * element further ahead blocks, so when one producer stalls the others wait
+ * for it instead of piling up their elements.
+ */
+class ReorderBuffer<T> {
+
+	private final Object[] slots;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition nextReady = lock.newCondition();
+	private final Condition windowMoved = lock.newCondition();
+
+	// sequence of the next element to take, its slot is the sequence modulo capacity
+	private long next = 0;
+	private boolean closed = false;
+
+	ReorderBuffer(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		slots = new Object[capacity];
+	}
+
+	/**
+	 * Waits until the sequence is within the window.
+	 *
+	 * @return - false when the buffer was closed and the element was dropped
+	 */
+	boolean put(long sequence, T element) throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (!closed && sequence - next >= slots.length) {
+				windowMoved.await();
+			}
+			if (closed) {
+				return false;
+			}
+			slots[(int) (sequence % slots.length)] = element;
+			if (sequence == next) {
+				nextReady.signal();
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for the element of the next sequence.
+	 *
+	 * @return - the element, null when the buffer is closed before it was put
+	 */
+	@SuppressWarnings("unchecked")
+	T take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			final int slot = (int) (next % slots.length);
+			while (!closed && slots[slot] == null) {
+				nextReady.await();
+			}
+			final T element = (T) slots[slot];
+			if (element == null) {
+				return null;
+			}
+			slots[slot] = null;
+			next++;
+			windowMoved.signalAll();
+			return element;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * No more elements will be accepted, the elements of the following
+	 * sequences which are already in the buffer can still be taken.
+	 */
+	void close() {
+		lock.lock();
+		try {
+			closed = true;
+			nextReady.signalAll();
+			windowMoved.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.providers;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue between two stages of @{@link PipelinedMoviesProvider}. The
+ * slots are allocated once, a producer blocks while the buffer is full, so a
+ * slow stage slows down the stages before it instead of buffering the input.
+ */
+class RingBuffer<T> {
+
+	private final Object[] slots;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	// total number of elements ever put and taken, the slot is the sequence modulo capacity
+	private long head = 0;
+	private long tail = 0;
+	private boolean closed = false;
+
+	RingBuffer(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		slots = new Object[capacity];
+	}
+
+	/**
+	 * Waits for a free slot.
+	 *
+	 * @return - false when the buffer was closed and the element was dropped
+	 */
+	boolean put(T element) throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (!closed && tail - head == slots.length) {
+				notFull.await();
+			}
+			if (closed) {
+				return false;
+			}
+			slots[(int) (tail++ % slots.length)] = element;
+			notEmpty.signal();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for an element.
+	 *
+	 * @return - the oldest element, null when the buffer is closed and drained
+	 */
+	@SuppressWarnings("unchecked")
+	T take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (!closed && head == tail) {
+				notEmpty.await();
+			}
+			if (head == tail) {
+				return null;
+			}
+			final int slot = (int) (head++ % slots.length);
+			final T element = (T) slots[slot];
+			slots[slot] = null;
+			notFull.signal();
+			return element;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * No more elements will be accepted, the elements already in the buffer
+	 * can still be taken.
+	 */
+	void close() {
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
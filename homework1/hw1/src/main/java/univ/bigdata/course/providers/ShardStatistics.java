@@ -0,0 +1,62 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.providers;
+
+import java.io.File;
+
+/**
+ * Statistics of reading a single shard file by @{@link CompositeMoviesProvider}.
+ */
+public class ShardStatistics {
+
+    private final File file;
+
+    private final long bytes;
+
+    private final long reviews;
+
+    private final long readMillis;
+
+    public ShardStatistics(File file, long bytes, long reviews, long readMillis) {
+        this.file = file;
+        this.bytes = bytes;
+        this.reviews = reviews;
+        this.readMillis = readMillis;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return - size of the shard file
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getReviews() {
+        return reviews;
+    }
+
+    /**
+     * @return - time from the start of the shard reader until the shard was read and parsed
+     */
+    public long getReadMillis() {
+        return readMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardStatistics{" +
+                "file=" + file +
+                ", bytes=" + bytes +
+                ", reviews=" + reviews +
+                ", readMillis=" + readMillis +
+                '}';
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.recommend;
+
+import univ.bigdata.course.external.TopK;
+import univ.bigdata.course.output.ScoreFormat;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * "Also reviewed" queries over @{@link CoReviewMatrix}. Similarity of two
+ * movies (or users) is the cosine similarity of their binary review vectors,
+ * i.e. the number of common reviewers divided by the square root of the
+ * product of their reviewers counts.
+ * <p>
+ * Heavy hitters are pruned: users who reviewed more than maxUserDegree movies
+ * are ignored when counting co-reviewed movies, and movies reviewed by more than
+ * maxMovieDegree users are ignored when comparing users. Such users and movies
+ * carry almost no signal, but their cost grows quadratically with their degree.
+ */
+public class CoReviewEngine {
+
+	public static final int DEFAULT_MAX_DEGREE = 10000;
+
+	private static final Comparator<MoviePair> PAIR_ORDER = (p1, p2) -> {
+		if (p1.getSimilarity() != p2.getSimilarity()) {
+			return (p1.getSimilarity() > p2.getSimilarity()) ? -1 : 1;
+		}
+		if (p1.getCoReviews() != p2.getCoReviews()) {
+			return (p1.getCoReviews() > p2.getCoReviews()) ? -1 : 1;
+		}
+		int byFirst = p1.getFirstProductId().compareTo(p2.getFirstProductId());
+		return (byFirst != 0) ? byFirst : p1.getSecondProductId().compareTo(p2.getSecondProductId());
+	};
+
+	private final CoReviewMatrix matrix;
+	private final int maxUserDegree;
+	private final int maxMovieDegree;
+
+	public CoReviewEngine(final CoReviewMatrix matrix) {
+		this(matrix, DEFAULT_MAX_DEGREE, DEFAULT_MAX_DEGREE);
+	}
+
+	public CoReviewEngine(final CoReviewMatrix matrix, final int maxUserDegree, final int maxMovieDegree) {
+		this.matrix = matrix;
+		this.maxUserDegree = maxUserDegree;
+		this.maxMovieDegree = maxMovieDegree;
+	}
+
+	/**
+	 * @return - top n movies reviewed by the users who reviewed the given movie,
+	 * with the number of such users, ordered by this number in decreasing order
+	 * and then by product id.
+	 */
+	public Map<String, Long> alsoReviewed(final String productId, final int topN) {
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		int movie = matrix.movies().idOf(productId);
+		if (movie < 0) {
+			return result;
+		}
+		int[] counts = new int[matrix.movies().size()];
+		int[] touched = new int[matrix.movies().size()];
+		int numTouched = 0;
+		for (int i = matrix.movieOffsets[movie]; i < matrix.movieOffsets[movie + 1]; i++) {
+			int user = matrix.movieUsers[i];
+			if (matrix.userDegree(user) > maxUserDegree) {
+				continue;
+			}
+			for (int j = matrix.userOffsets[user]; j < matrix.userOffsets[user + 1]; j++) {
+				int other = matrix.userMovies[j];
+				if (other != movie && counts[other]++ == 0) {
+					touched[numTouched++] = other;
+				}
+			}
+		}
+		TopK<Map.Entry<String, Long>> top = new TopK<Map.Entry<String, Long>>(topN, (o1, o2) -> {
+			int byCount = o2.getValue().compareTo(o1.getValue());
+			return (byCount != 0) ? byCount : o1.getKey().compareTo(o2.getKey());
+		});
+		for (int i = 0; i < numTouched; i++) {
+			top.offer(new AbstractMap.SimpleImmutableEntry<String, Long>(
+					matrix.movies().valueOf(touched[i]), (long) counts[touched[i]]));
+		}
+		for (Map.Entry<String, Long> entry : top.sorted()) {
+			result.put(entry.getKey(), entry.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * @return - top n users most similar to the given user, with their (rounded)
+	 * similarity, ordered by similarity in decreasing order and then by user id.
+	 */
+	public Map<String, Double> similarUsers(final String userId, final int topN) {
+		Map<String, Double> result = new LinkedHashMap<String, Double>();
+		int user = matrix.users().idOf(userId);
+		if (user < 0) {
+			return result;
+		}
+		int[] overlaps = new int[matrix.users().size()];
+		int[] touched = new int[matrix.users().size()];
+		int numTouched = 0;
+		for (int i = matrix.userOffsets[user]; i < matrix.userOffsets[user + 1]; i++) {
+			int movie = matrix.userMovies[i];
+			if (matrix.movieDegree(movie) > maxMovieDegree) {
+				continue;
+			}
+			for (int j = matrix.movieOffsets[movie]; j < matrix.movieOffsets[movie + 1]; j++) {
+				int other = matrix.movieUsers[j];
+				if (other != user && overlaps[other]++ == 0) {
+					touched[numTouched++] = other;
+				}
+			}
+		}
+		TopK<Map.Entry<String, Double>> top = new TopK<Map.Entry<String, Double>>(topN, (o1, o2) -> {
+			int bySimilarity = o2.getValue().compareTo(o1.getValue());
+			return (bySimilarity != 0) ? bySimilarity : o1.getKey().compareTo(o2.getKey());
+		});
+		for (int i = 0; i < numTouched; i++) {
+			int other = touched[i];
+			double similarity = overlaps[other] / Math.sqrt((double) matrix.userDegree(user) * matrix.userDegree(other));
+			top.offer(new AbstractMap.SimpleImmutableEntry<String, Double>(matrix.users().valueOf(other), similarity));
+		}
+		for (Map.Entry<String, Double> entry : top.sorted()) {
+			result.put(entry.getKey(), ScoreFormat.round(entry.getValue()));
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the similarity of all the pairs of movies which have at least
+	 * minCoReviews common reviewers, in parallel.
+	 *
+	 * @return - top n most similar pairs, ordered by similarity, then by number of
+	 * common reviewers in decreasing order and then by product ids.
+	 */
+	public List<MoviePair> similarMoviePairs(final int topN, final int minCoReviews) {
+		final int numMovies = matrix.movies().size();
+		// small chunks, so the threads stay busy even though movies have very different degrees
+		final int chunkSize = Math.max(1, numMovies / (Runtime.getRuntime().availableProcessors() * 8));
+		final int numChunks = (numMovies + chunkSize - 1) / chunkSize;
+		List<List<MoviePair>> partials = IntStream.range(0, numChunks).parallel()
+				.mapToObj(chunk -> similarMoviePairs(chunk * chunkSize, Math.min(numMovies, (chunk + 1) * chunkSize),
+						topN, Math.max(1, minCoReviews)))
+				.collect(Collectors.toList());
+		TopK<MoviePair> top = new TopK<MoviePair>(topN, PAIR_ORDER);
+		for (List<MoviePair> partial : partials) {
+			for (MoviePair pair : partial) {
+				top.offer(pair);
+			}
+		}
+		List<MoviePair> result = new ArrayList<MoviePair>();
+		for (MoviePair pair : top.sorted()) {
+			result.add(new MoviePair(pair.getFirstProductId(), pair.getSecondProductId(), pair.getCoReviews(),
+					ScoreFormat.round(pair.getSimilarity())));
+		}
+		return result;
+	}
+
+	// Pairs (movie, other) of movies in [from, to), where other > movie so each pair is visited once
+	private List<MoviePair> similarMoviePairs(int from, int to, int topN, int minCoReviews) {
+		int[] overlaps = new int[matrix.movies().size()];
+		int[] touched = new int[matrix.movies().size()];
+		TopK<MoviePair> top = new TopK<MoviePair>(topN, PAIR_ORDER);
+		for (int movie = from; movie < to; movie++) {
+			int numTouched = 0;
+			for (int i = matrix.movieOffsets[movie]; i < matrix.movieOffsets[movie + 1]; i++) {
+				int user = matrix.movieUsers[i];
+				if (matrix.userDegree(user) > maxUserDegree) {
+					continue;
+				}
+				// rows are sorted, so the movies with higher id follow the current one
+				int start = Arrays.binarySearch(matrix.userMovies, matrix.userOffsets[user], matrix.userOffsets[user + 1], movie) + 1;
+				for (int j = start; j < matrix.userOffsets[user + 1]; j++) {
+					int other = matrix.userMovies[j];
+					if (overlaps[other]++ == 0) {
+						touched[numTouched++] = other;
+					}
+				}
+			}
+			for (int i = 0; i < numTouched; i++) {
+				int other = touched[i];
+				if (overlaps[other] >= minCoReviews) {
+					double similarity = overlaps[other] / Math.sqrt((double) matrix.movieDegree(movie) * matrix.movieDegree(other));
+					top.offer(pair(movie, other, overlaps[other], similarity));
+				}
+				overlaps[other] = 0;
+			}
+		}
+		return top.sorted();
+	}
+
+	private MoviePair pair(int movie, int other, long coReviews, double similarity) {
+		String first = matrix.movies().valueOf(movie);
+		String second = matrix.movies().valueOf(other);
+		return (first.compareTo(second) <= 0)
+				? new MoviePair(first, second, coReviews, similarity)
+				: new MoviePair(second, first, coReviews, similarity);
+	}
+}
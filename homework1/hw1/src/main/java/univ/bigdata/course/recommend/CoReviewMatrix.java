@@ -0,0 +1,133 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.recommend;
+
+import univ.bigdata.course.index.IdDictionary;
+import univ.bigdata.course.movie.MovieReview;
+
+import java.util.Arrays;
+
+/**
+ * Binary user x movie matrix, cell (u, m) is set if user u reviewed movie m
+ * (any number of times). Stored twice in compressed sparse form: by rows (CSR),
+ * the sorted movies of every user, and by columns (CSC), the sorted users of
+ * every movie. Row i spans indexes [offsets[i], offsets[i + 1]).
+ */
+public class CoReviewMatrix {
+
+	private final IdDictionary users;
+	private final IdDictionary movies;
+
+	// CSR, movies reviewed by each user
+	final int[] userOffsets;
+	final int[] userMovies;
+
+	// CSC, users who reviewed each movie
+	final int[] movieOffsets;
+	final int[] movieUsers;
+
+	private CoReviewMatrix(IdDictionary users, IdDictionary movies, int[] userOffsets, int[] userMovies,
+						   int[] movieOffsets, int[] movieUsers) {
+		this.users = users;
+		this.movies = movies;
+		this.userOffsets = userOffsets;
+		this.userMovies = userMovies;
+		this.movieOffsets = movieOffsets;
+		this.movieUsers = movieUsers;
+	}
+
+	public static CoReviewMatrix build(Iterable<MovieReview> reviews) {
+		IdDictionary users = new IdDictionary();
+		IdDictionary movies = new IdDictionary();
+		int[] pairUsers = new int[1024];
+		int[] pairMovies = new int[1024];
+		int numPairs = 0;
+		for (MovieReview mr : reviews) {
+			if (numPairs == pairUsers.length) {
+				pairUsers = Arrays.copyOf(pairUsers, numPairs * 2);
+				pairMovies = Arrays.copyOf(pairMovies, numPairs * 2);
+			}
+			pairUsers[numPairs] = users.encode(mr.getUserId());
+			pairMovies[numPairs] = movies.encode(mr.getMovie().getProductId());
+			numPairs++;
+		}
+
+		// counting sort of the pairs by user
+		int[] rowOffsets = new int[users.size() + 1];
+		for (int i = 0; i < numPairs; i++) {
+			rowOffsets[pairUsers[i] + 1]++;
+		}
+		for (int u = 0; u < users.size(); u++) {
+			rowOffsets[u + 1] += rowOffsets[u];
+		}
+		int[] rowMovies = new int[numPairs];
+		int[] fill = Arrays.copyOf(rowOffsets, users.size());
+		for (int i = 0; i < numPairs; i++) {
+			rowMovies[fill[pairUsers[i]]++] = pairMovies[i];
+		}
+
+		// sorting each row and dropping repeated reviews of the same movie
+		int[] userOffsets = new int[users.size() + 1];
+		int nonZeros = 0;
+		for (int u = 0; u < users.size(); u++) {
+			Arrays.sort(rowMovies, rowOffsets[u], rowOffsets[u + 1]);
+			for (int i = rowOffsets[u]; i < rowOffsets[u + 1]; i++) {
+				if (i == rowOffsets[u] || rowMovies[i] != rowMovies[i - 1]) {
+					rowMovies[nonZeros++] = rowMovies[i];
+				}
+			}
+			userOffsets[u + 1] = nonZeros;
+		}
+		int[] userMovies = Arrays.copyOf(rowMovies, nonZeros);
+
+		// transposing, rows are visited in user order so each column is sorted
+		int[] movieOffsets = new int[movies.size() + 1];
+		for (int i = 0; i < nonZeros; i++) {
+			movieOffsets[userMovies[i] + 1]++;
+		}
+		for (int m = 0; m < movies.size(); m++) {
+			movieOffsets[m + 1] += movieOffsets[m];
+		}
+		int[] movieUsers = new int[nonZeros];
+		fill = Arrays.copyOf(movieOffsets, movies.size());
+		for (int u = 0; u < users.size(); u++) {
+			for (int i = userOffsets[u]; i < userOffsets[u + 1]; i++) {
+				movieUsers[fill[userMovies[i]]++] = u;
+			}
+		}
+		return new CoReviewMatrix(users, movies, userOffsets, userMovies, movieOffsets, movieUsers);
+	}
+
+	public IdDictionary users() {
+		return users;
+	}
+
+	public IdDictionary movies() {
+		return movies;
+	}
+
+	/**
+	 * @return - number of distinct movies the user reviewed
+	 */
+	public int userDegree(int user) {
+		return userOffsets[user + 1] - userOffsets[user];
+	}
+
+	/**
+	 * @return - number of distinct users who reviewed the movie
+	 */
+	public int movieDegree(int movie) {
+		return movieOffsets[movie + 1] - movieOffsets[movie];
+	}
+
+	/**
+	 * @return - number of set cells
+	 */
+	public int nonZeros() {
+		return userMovies.length;
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.recommend;
+
+public class MoviePair {
+
+    private final String firstProductId;
+
+    private final String secondProductId;
+
+    private final long coReviews;
+
+    private final double similarity;
+
+    public MoviePair(String firstProductId, String secondProductId, long coReviews, double similarity) {
+        this.firstProductId = firstProductId;
+        this.secondProductId = secondProductId;
+        this.coReviews = coReviews;
+        this.similarity = similarity;
+    }
+
+    public String getFirstProductId() {
+        return firstProductId;
+    }
+
+    public String getSecondProductId() {
+        return secondProductId;
+    }
+
+    /**
+     * @return - number of users who reviewed both movies
+     */
+    public long getCoReviews() {
+        return coReviews;
+    }
+
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    @Override
+    public String toString() {
+        return "MoviePair{" +
+                "firstProductId='" + firstProductId + '\'' +
+                ", secondProductId='" + secondProductId + '\'' +
+                ", coReviews=" + coReviews +
+                ", similarity=" + similarity +
+                '}';
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.segment;
+
+import univ.bigdata.course.movie.Movie;
+import univ.bigdata.course.movie.MovieReview;
+import univ.bigdata.course.partition.ScoreStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Read only file of reviews sorted by product id, written by
+ * @{@link SegmentWriter}. The reviews are stored in blocks followed by a
+ * footer which keeps for every block its offset and its zone map: first and
+ * last product id, earliest and latest review time and the scores sum. The
+ * footer is loaded into memory on open and serves as a sparse index of the
+ * product ids, the file itself is memory mapped and only the blocks which may
+ * hold the requested reviews are decoded.
+ * <p>
+ * Layout: blocks, footer, footer offset (long), blocks count (int), @{@link #MAGIC} (int).
+ * Every review is stored as product id, score, time, user id, profile name,
+ * helpfulness, summary and text, so the score aggregations can skip the text.
+ */
+public class Segment implements Iterable<MovieReview>, AutoCloseable {
+
+	static final int MAGIC = 0x5345474d;
+	static final int TRAILER_SIZE = 16;
+	static final long NO_TIME = Long.MIN_VALUE;
+
+	private final File file;
+	private final FileChannel channel;
+	private final MappedByteBuffer data;
+
+	// zone map of every block
+	private final int blocksCount;
+	private final int[] offsets;
+	private final int[] counts;
+	private final String[] firstProductIds;
+	private final String[] lastProductIds;
+	private final long[] minTimes;
+	private final long[] maxTimes;
+	private final double[] scoreSums;
+
+	private Segment(File file) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			if (channel.size() > Integer.MAX_VALUE || channel.size() < TRAILER_SIZE) {
+				throw new IOException("Not a valid segment file: " + file);
+			}
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			ByteBuffer in = data.duplicate();
+			in.position(in.limit() - TRAILER_SIZE);
+			final long footerOffset = in.getLong();
+			blocksCount = in.getInt();
+			if (in.getInt() != MAGIC) {
+				throw new IOException("Not a valid segment file: " + file);
+			}
+			offsets = new int[blocksCount];
+			counts = new int[blocksCount];
+			firstProductIds = new String[blocksCount];
+			lastProductIds = new String[blocksCount];
+			minTimes = new long[blocksCount];
+			maxTimes = new long[blocksCount];
+			scoreSums = new double[blocksCount];
+			in.position((int) footerOffset);
+			for (int i = 0; i < blocksCount; i++) {
+				offsets[i] = (int) in.getLong();
+				counts[i] = in.getInt();
+				firstProductIds[i] = readString(in);
+				lastProductIds[i] = readString(in);
+				minTimes[i] = in.getLong();
+				maxTimes[i] = in.getLong();
+				scoreSums[i] = in.getDouble();
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public static Segment open(File file) throws IOException {
+		return new Segment(file);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int blocksCount() {
+		return blocksCount;
+	}
+
+	/**
+	 * @return - the smallest product id in the segment, null if it is empty
+	 */
+	public String firstProductId() {
+		return (blocksCount == 0) ? null : firstProductIds[0];
+	}
+
+	/**
+	 * @return - the largest product id in the segment, null if it is empty
+	 */
+	public String lastProductId() {
+		return (blocksCount == 0) ? null : lastProductIds[blocksCount - 1];
+	}
+
+	/**
+	 * @return - number of reviews in the segment
+	 */
+	public long size() {
+		long size = 0;
+		for (int count : counts) {
+			size += count;
+		}
+		return size;
+	}
+
+	/**
+	 * Computed from the zone maps only, without reading the blocks.
+	 */
+	public ScoreStats totalScoreStats() {
+		ScoreStats total = new ScoreStats();
+		for (int i = 0; i < blocksCount; i++) {
+			total.merge(new ScoreStats(scoreSums[i], counts[i]));
+		}
+		return total;
+	}
+
+	/**
+	 * @return - scores of the reviews of the given movie, reading only the blocks which may hold them
+	 */
+	public ScoreStats movieScoreStats(String productId) {
+		ScoreStats stats = new ScoreStats();
+		ByteBuffer in = data.duplicate();
+		for (int block = firstBlock(productId); block < blocksCount
+				&& firstProductIds[block].compareTo(productId) <= 0; block++) {
+			in.position(offsets[block]);
+			for (int i = 0; i < counts[block]; i++) {
+				final String pid = readString(in);
+				final double score = in.getDouble();
+				skipFields(in);
+				if (pid.equals(productId)) {
+					stats.add(score);
+				}
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * Passes the reviews of the movies in the product id range which were
+	 * written in the time range, in product id order. Blocks are chosen by
+	 * binary search of the first product id, and skipped when their time range
+	 * doesn't overlap the requested one.
+	 *
+	 * @param fromProductId - first product id, inclusive, null for the first movie
+	 * @param toProductId - last product id, inclusive, null for the last movie
+	 * @param fromTime - earliest review time in milliseconds, inclusive
+	 * @param toTime - latest review time in milliseconds, inclusive
+	 */
+	public void reviews(String fromProductId, String toProductId, long fromTime, long toTime,
+						Consumer<MovieReview> consumer) {
+		ByteBuffer in = data.duplicate();
+		for (int block = (fromProductId == null) ? 0 : firstBlock(fromProductId); block < blocksCount
+				&& (toProductId == null || firstProductIds[block].compareTo(toProductId) <= 0); block++) {
+			if (maxTimes[block] < fromTime || minTimes[block] > toTime) {
+				continue;
+			}
+			in.position(offsets[block]);
+			for (int i = 0; i < counts[block]; i++) {
+				final MovieReview review = readReview(in, true);
+				final String pid = review.getMovie().getProductId();
+				final long time = timeOf(review);
+				if ((fromProductId == null || pid.compareTo(fromProductId) >= 0)
+						&& (toProductId == null || pid.compareTo(toProductId) <= 0)
+						&& time >= fromTime && time <= toTime) {
+					consumer.accept(review);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return - all the reviews in product id order, decoding one block at a time
+	 */
+	@Override
+	public Iterator<MovieReview> iterator() {
+		return iterator(true);
+	}
+
+	/**
+	 * @return - all the reviews in product id order with only their product id,
+	 * score, time and user id decoded, the other fields are skipped
+	 */
+	public Iterator<MovieReview> keys() {
+		return iterator(false);
+	}
+
+	private Iterator<MovieReview> iterator(final boolean withText) {
+		final ByteBuffer in = data.duplicate();
+		return new Iterator<MovieReview>() {
+			private int block = 0;
+			private int left = 0;
+
+			@Override
+			public boolean hasNext() {
+				while (left == 0 && block < blocksCount) {
+					in.position(offsets[block]);
+					left = counts[block++];
+				}
+				return left > 0;
+			}
+
+			@Override
+			public MovieReview next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				left--;
+				return readReview(in, withText);
+			}
+		};
+	}
+
+	// first block which may hold the given product id, blocksCount if none
+	private int firstBlock(String productId) {
+		int low = 0;
+		int high = blocksCount;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (lastProductIds[mid].compareTo(productId) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	static long timeOf(MovieReview review) {
+		return (review.getTimestamp() == null) ? NO_TIME : review.getTimestamp().getTime();
+	}
+
+	private static MovieReview readReview(ByteBuffer in, boolean withText) {
+		final Movie movie = new Movie(readString(in), in.getDouble());
+		final long time = in.getLong();
+		final MovieReview review = new MovieReview();
+		review.setMovie(movie);
+		review.setTimestamp((time == NO_TIME) ? null : new Date(time));
+		review.setUserId(readString(in));
+		if (!withText) {
+			skipStrings(in, 4);
+			return review;
+		}
+		review.setProfileName(readString(in));
+		review.setHelpfulness(readString(in));
+		review.setSummary(readString(in));
+		review.setReview(readString(in));
+		return review;
+	}
+
+	// skips the fields after the score: time and the five strings
+	private static void skipFields(ByteBuffer in) {
+		in.position(in.position() + Long.BYTES);
+		skipStrings(in, 5);
+	}
+
+	private static void skipStrings(ByteBuffer in, int count) {
+		for (int i = 0; i < count; i++) {
+			final int length = in.getInt();
+			if (length > 0) {
+				in.position(in.position() + length);
+			}
+		}
+	}
+
+	private static String readString(ByteBuffer in) {
+		final int length = in.getInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
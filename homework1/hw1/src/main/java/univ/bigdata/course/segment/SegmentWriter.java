@@ -0,0 +1,346 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.segment;
+
+import univ.bigdata.course.movie.MovieReview;
+import univ.bigdata.course.providers.MoviesProvider;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Writes the reviews of a provider into @{@link Segment} files. Reviews are
+ * buffered up to the given number per segment, sorted by product id (and
+ * review time within a movie) and written in blocks with their zone maps, so
+ * memory is bounded by a single segment and not by the whole archive. The
+ * sorted runs are then compacted by a k-way merge into segments of disjoint
+ * product id ranges, cut between movies, so a movie is looked up in a single
+ * segment. A manifest listing the segments is written last and marks the
+ * directory as complete; it also records the files the reviews were read
+ * from (path, size and modification time) and the writer settings, so the
+ * segments are reused only for the same input and settings.
+ */
+public class SegmentWriter {
+
+	public static final int DEFAULT_REVIEWS_PER_SEGMENT = 1 << 20;
+	public static final int DEFAULT_BLOCK_REVIEWS = 64;
+
+	public static final String MANIFEST = "segments.manifest";
+
+	static final String SEGMENT_SUFFIX = ".seg";
+	// manifest lines are "<kind>\t<value>"
+	private static final String SEGMENT_ENTRY = "segment\t";
+	private static final String SEGMENT_PREFIX = "segment-";
+	// sorted runs of the input, before they are compacted into segments
+	private static final String RUN_PREFIX = "run-";
+
+	// product id, then review time
+	static final Comparator<MovieReview> KEY_ORDER = (o1, o2) -> {
+		int byProductId = o1.getMovie().getProductId().compareTo(o2.getMovie().getProductId());
+		return (byProductId != 0) ? byProductId : Long.compare(Segment.timeOf(o1), Segment.timeOf(o2));
+	};
+
+	private final File directory;
+	private final int reviewsPerSegment;
+	private final int blockReviews;
+
+	/**
+	 * @param reviewsPerSegment - number of reviews in a segment, also the number of reviews held in memory, a
+	 *                          segment may have more when its last movie has more reviews
+	 * @param blockReviews - number of reviews in a block, the unit read by lookups
+	 */
+	public SegmentWriter(File directory, int reviewsPerSegment, int blockReviews) {
+		if (reviewsPerSegment <= 0 || blockReviews <= 0) {
+			throw new IllegalArgumentException("Reviews per segment and per block must be positive");
+		}
+		this.directory = directory;
+		this.reviewsPerSegment = reviewsPerSegment;
+		this.blockReviews = blockReviews;
+	}
+
+	/**
+	 * Replaces the segments in the directory with the reviews of the provider.
+	 *
+	 * @return - the written segment files, in product id order
+	 */
+	public List<File> write(MoviesProvider provider) throws IOException {
+		return write(provider, Collections.<File>emptyList());
+	}
+
+	/**
+	 * Replaces the segments in the directory with the reviews of the provider.
+	 *
+	 * @param sources - the files the provider reads, recorded for @{@link #isUpToDate(List)}
+	 * @return - the written segment files, in product id order
+	 */
+	public List<File> write(MoviesProvider provider, List<File> sources) throws IOException {
+		// taken before reading, so a change of the sources while they are read is noticed later
+		final List<String> lines = fingerprint(sources);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Failed to create segments directory " + directory);
+		}
+		final File manifest = new File(directory, MANIFEST);
+		List<File> old = new ArrayList<File>(segmentFiles(directory, SEGMENT_PREFIX));
+		old.addAll(segmentFiles(directory, RUN_PREFIX));
+		if (manifest.exists()) {
+			// removed first, so the directory is not complete until the new manifest is written
+			old.add(0, manifest);
+		}
+		for (File file : old) {
+			if (!file.delete()) {
+				throw new IOException("Failed to delete old segment " + file);
+			}
+		}
+		List<File> runs = new ArrayList<File>();
+		List<MovieReview> buffer = new ArrayList<MovieReview>();
+		while (provider.hasMovie()) {
+			buffer.add(provider.getMovie());
+			if (buffer.size() == reviewsPerSegment) {
+				runs.add(writeSegment(buffer, fileOf(RUN_PREFIX, runs.size())));
+				buffer.clear();
+			}
+		}
+		if (!buffer.isEmpty()) {
+			runs.add(writeSegment(buffer, fileOf(RUN_PREFIX, runs.size())));
+		}
+		final List<File> segments = compact(runs);
+		for (File segment : segments) {
+			lines.add(SEGMENT_ENTRY + segment.getName());
+		}
+		Files.write(manifest.toPath(), lines, StandardCharsets.UTF_8);
+		return segments;
+	}
+
+	/**
+	 * @param sources - the files the segments should be written from
+	 * @return - true when the directory holds complete segments written by the same settings from
+	 * the same sources, which have not changed since (by their size and modification time)
+	 */
+	public boolean isUpToDate(List<File> sources) throws IOException {
+		final File manifest = new File(directory, MANIFEST);
+		if (sources.isEmpty() || !manifest.isFile()) {
+			return false;
+		}
+		final List<String> recorded = new ArrayList<String>();
+		for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+			if (!line.startsWith(SEGMENT_ENTRY)) {
+				recorded.add(line);
+			} else if (!new File(directory, line.substring(SEGMENT_ENTRY.length())).isFile()) {
+				return false;
+			}
+		}
+		return recorded.equals(fingerprint(sources));
+	}
+
+	// manifest lines identifying the input and the settings of the segments
+	private List<String> fingerprint(List<File> sources) throws IOException {
+		final List<String> lines = new ArrayList<String>();
+		lines.add("reviewsPerSegment\t" + reviewsPerSegment);
+		lines.add("blockReviews\t" + blockReviews);
+		for (File source : sources) {
+			lines.add("source\t" + source.getCanonicalPath() + "\t" + source.length() + "\t" + source.lastModified());
+		}
+		return lines;
+	}
+
+	// merges the sorted runs into segments of disjoint product id ranges and deletes the runs
+	private List<File> compact(List<File> runs) throws IOException {
+		final List<File> segments = new ArrayList<File>();
+		if (runs.size() == 1) {
+			// a single run is sorted already
+			final File segment = fileOf(SEGMENT_PREFIX, 0);
+			Files.move(runs.get(0).toPath(), segment.toPath());
+			segments.add(segment);
+			return segments;
+		}
+		final List<Segment> opened = new ArrayList<Segment>();
+		try {
+			final List<Iterator<MovieReview>> sorted = new ArrayList<Iterator<MovieReview>>();
+			for (File run : runs) {
+				final Segment segment = Segment.open(run);
+				opened.add(segment);
+				sorted.add(segment.iterator());
+			}
+			final List<MovieReview> buffer = new ArrayList<MovieReview>();
+			final Iterator<MovieReview> merged = merge(sorted);
+			while (merged.hasNext()) {
+				final MovieReview review = merged.next();
+				// segments are cut between movies, so their product id ranges don't overlap
+				if (buffer.size() >= reviewsPerSegment && !review.getMovie().getProductId()
+						.equals(buffer.get(buffer.size() - 1).getMovie().getProductId())) {
+					segments.add(writeSegment(buffer, fileOf(SEGMENT_PREFIX, segments.size())));
+					buffer.clear();
+				}
+				buffer.add(review);
+			}
+			if (!buffer.isEmpty()) {
+				segments.add(writeSegment(buffer, fileOf(SEGMENT_PREFIX, segments.size())));
+			}
+		} finally {
+			for (Segment segment : opened) {
+				segment.close();
+			}
+			for (File run : runs) {
+				run.delete();
+			}
+		}
+		return segments;
+	}
+
+	private static class Cursor {
+		final int run;
+		final Iterator<MovieReview> reviews;
+		MovieReview head;
+
+		Cursor(int run, Iterator<MovieReview> reviews) {
+			this.run = run;
+			this.reviews = reviews;
+			this.head = reviews.next();
+		}
+	}
+
+	/**
+	 * @param sorted - reviews sorted by @{@link #KEY_ORDER}
+	 * @return - k-way merge of the reviews by @{@link #KEY_ORDER}, in case of same key by the order of the runs
+	 */
+	static Iterator<MovieReview> merge(List<Iterator<MovieReview>> sorted) {
+		final PriorityQueue<Cursor> heads = new PriorityQueue<Cursor>(Math.max(1, sorted.size()), (o1, o2) -> {
+			int byKey = KEY_ORDER.compare(o1.head, o2.head);
+			return (byKey != 0) ? byKey : Integer.compare(o1.run, o2.run);
+		});
+		for (int i = 0; i < sorted.size(); i++) {
+			if (sorted.get(i).hasNext()) {
+				heads.add(new Cursor(i, sorted.get(i)));
+			}
+		}
+		return new Iterator<MovieReview>() {
+			@Override
+			public boolean hasNext() {
+				return !heads.isEmpty();
+			}
+
+			@Override
+			public MovieReview next() {
+				final Cursor cursor = heads.poll();
+				if (cursor == null) {
+					throw new NoSuchElementException();
+				}
+				final MovieReview review = cursor.head;
+				if (cursor.reviews.hasNext()) {
+					cursor.head = cursor.reviews.next();
+					heads.add(cursor);
+				}
+				return review;
+			}
+		};
+	}
+
+	/**
+	 * @return - the segment files of the directory, in the order they were written
+	 */
+	static List<File> segmentFiles(File directory) {
+		return segmentFiles(directory, SEGMENT_PREFIX);
+	}
+
+	private static List<File> segmentFiles(File directory, String prefix) {
+		List<File> segments = new ArrayList<File>();
+		File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(SEGMENT_SUFFIX));
+		if (files != null) {
+			for (File file : files) {
+				segments.add(file);
+			}
+			segments.sort(Comparator.comparing(File::getName));
+		}
+		return segments;
+	}
+
+	private File fileOf(String prefix, int number) {
+		return new File(directory, String.format("%s%06d%s", prefix, number, SEGMENT_SUFFIX));
+	}
+
+	private File writeSegment(List<MovieReview> reviews, File file) throws IOException {
+		reviews.sort(KEY_ORDER);
+		final ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+		final DataOutputStream footer = new DataOutputStream(footerBytes);
+		final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+		final DataOutputStream block = new DataOutputStream(blockBytes);
+		int blocksCount = 0;
+		long position = 0;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			for (int from = 0; from < reviews.size(); from += blockReviews) {
+				final int to = Math.min(from + blockReviews, reviews.size());
+				long minTime = Long.MAX_VALUE;
+				long maxTime = Long.MIN_VALUE;
+				double scoreSum = 0;
+				blockBytes.reset();
+				for (int i = from; i < to; i++) {
+					final MovieReview review = reviews.get(i);
+					final long time = Segment.timeOf(review);
+					minTime = Math.min(minTime, time);
+					maxTime = Math.max(maxTime, time);
+					scoreSum += review.getMovie().getScore();
+					writeReview(block, review, time);
+				}
+				block.flush();
+				blockBytes.writeTo(out);
+
+				footer.writeLong(position);
+				footer.writeInt(to - from);
+				writeString(footer, reviews.get(from).getMovie().getProductId());
+				writeString(footer, reviews.get(to - 1).getMovie().getProductId());
+				footer.writeLong(minTime);
+				footer.writeLong(maxTime);
+				footer.writeDouble(scoreSum);
+				position += blockBytes.size();
+				blocksCount++;
+			}
+			footer.flush();
+			if (position + footerBytes.size() + Segment.TRAILER_SIZE > Integer.MAX_VALUE) {
+				throw new IOException("Segment " + file + " exceeds 2GB, use less reviews per segment");
+			}
+			footerBytes.writeTo(out);
+			out.writeLong(position);
+			out.writeInt(blocksCount);
+			out.writeInt(Segment.MAGIC);
+		}
+		return file;
+	}
+
+	private static void writeReview(DataOutputStream out, MovieReview review, long time) throws IOException {
+		writeString(out, review.getMovie().getProductId());
+		out.writeDouble(review.getMovie().getScore());
+		out.writeLong(time);
+		writeString(out, review.getUserId());
+		writeString(out, review.getProfileName());
+		writeString(out, review.getHelpfulness());
+		writeString(out, review.getSummary());
+		writeString(out, review.getReview());
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
@@ -0,0 +1,347 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.segment;
+
+import univ.bigdata.course.IMoviesStorage;
+import univ.bigdata.course.MoviesStorage;
+import univ.bigdata.course.external.ExternalAggregation;
+import univ.bigdata.course.external.TopK;
+import univ.bigdata.course.movie.Movie;
+import univ.bigdata.course.movie.MovieReview;
+import univ.bigdata.course.output.ScoreFormat;
+import univ.bigdata.course.partition.ScoreStats;
+import univ.bigdata.course.providers.MoviesProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Storage which keeps the reviews on disk in @{@link Segment}s instead of the
+ * heap. Lookups of a movie or of a product id and time range first choose the
+ * segments by the manifest of their product id ranges and then read only the
+ * blocks chosen by the sparse index and zone maps of these segments. When the
+ * segments were compacted by @{@link SegmentWriter} their ranges are disjoint,
+ * the manifest is binary searched and a movie is looked up in a single segment
+ * whatever the number of segments. The other queries stream the segments in
+ * product id order, decoding only the fields they use, so per movie state is
+ * kept for one movie at a time, and the per word and per user aggregations are
+ * executed by @{@link ExternalAggregation}.
+ */
+public class SegmentedMoviesStorage implements IMoviesStorage, AutoCloseable {
+
+	private final List<Segment> segments;
+	private final ExternalAggregation aggregation;
+	// manifest of the product id range of every segment
+	private final String[] firstProductIds;
+	private final String[] lastProductIds;
+	// true when the ranges are in increasing order and don't overlap
+	private final boolean disjoint;
+
+	/**
+	 * @param aggregation - executes the per word and per user aggregations
+	 */
+	public SegmentedMoviesStorage(final List<Segment> segments, final ExternalAggregation aggregation) {
+		this.segments = new ArrayList<Segment>(segments);
+		this.aggregation = aggregation;
+		this.firstProductIds = new String[segments.size()];
+		this.lastProductIds = new String[segments.size()];
+		boolean disjoint = true;
+		for (int i = 0; i < segments.size(); i++) {
+			firstProductIds[i] = segments.get(i).firstProductId();
+			lastProductIds[i] = segments.get(i).lastProductId();
+			if (firstProductIds[i] == null
+					|| (i > 0 && (lastProductIds[i - 1] == null || lastProductIds[i - 1].compareTo(firstProductIds[i]) >= 0))) {
+				disjoint = false;
+			}
+		}
+		this.disjoint = disjoint;
+	}
+
+	/**
+	 * Opens all the segments of the directory.
+	 */
+	public static SegmentedMoviesStorage open(final File directory, final ExternalAggregation aggregation) throws IOException {
+		List<Segment> segments = new ArrayList<Segment>();
+		try {
+			for (File file : SegmentWriter.segmentFiles(directory)) {
+				segments.add(Segment.open(file));
+			}
+		} catch (IOException e) {
+			for (Segment segment : segments) {
+				segment.close();
+			}
+			throw e;
+		}
+		return new SegmentedMoviesStorage(segments, aggregation);
+	}
+
+	/**
+	 * Writes the reviews of the provider into the directory, replacing its
+	 * segments, with the default segment and block sizes and opens them.
+	 */
+	public static SegmentedMoviesStorage write(final MoviesProvider provider, final File directory,
+											   final ExternalAggregation aggregation) throws IOException {
+		new SegmentWriter(directory, SegmentWriter.DEFAULT_REVIEWS_PER_SEGMENT, SegmentWriter.DEFAULT_BLOCK_REVIEWS)
+				.write(provider);
+		return open(directory, aggregation);
+	}
+
+	// Point and range lookups
+
+	public ScoreStats movieScoreStats(String productId) {
+		ScoreStats stats = new ScoreStats();
+		for (Segment segment : segmentsHolding(productId, productId)) {
+			stats.merge(segment.movieScoreStats(productId));
+		}
+		return stats;
+	}
+
+	/**
+	 * @param fromProductId - first product id, inclusive, null for the first movie
+	 * @param toProductId - last product id, inclusive, null for the last movie
+	 * @param fromTime - earliest review time in milliseconds, inclusive
+	 * @param toTime - latest review time in milliseconds, inclusive
+	 * @return - the reviews in the ranges, ordered by product id and time
+	 */
+	public List<MovieReview> reviews(String fromProductId, String toProductId, long fromTime, long toTime) {
+		List<MovieReview> reviews = new ArrayList<MovieReview>();
+		List<Segment> holding = segmentsHolding(fromProductId, toProductId);
+		for (Segment segment : holding) {
+			segment.reviews(fromProductId, toProductId, fromTime, toTime, reviews::add);
+		}
+		if (!disjoint && holding.size() > 1) {
+			reviews.sort(SegmentWriter.KEY_ORDER);
+		}
+		return reviews;
+	}
+
+	@Override
+	public double totalMoviesAverageScore() {
+		ScoreStats total = new ScoreStats();
+		for (Segment segment : segments) {
+			total.merge(segment.totalScoreStats());
+		}
+		return total.average();
+	}
+
+	@Override
+	public double totalMovieAverage(String productId) {
+		return movieScoreStats(productId).average();
+	}
+
+	@Override
+	public List<Movie> getTopKMoviesAverage(long topK) {
+		final TopK<Movie> top = new TopK<Movie>(topK, MoviesStorage.AVERAGE_ORDER);
+		forEachMovie(false, (productId, stats, users) -> top.offer(new Movie(productId, stats.average())));
+		List<Movie> topKMovies = new LinkedList<Movie>();
+		for (Movie movie : top.sorted()) {
+			movie.setScore(ScoreFormat.round(movie.getScore()));
+			topKMovies.add(movie);
+		}
+		return topKMovies;
+	}
+
+	@Override
+	public Movie movieWithHighestAverage() {
+		return getTopKMoviesAverage(1).get(0);
+	}
+
+	@Override
+	public List<Movie> getMoviesPercentile(double percent) {
+		final Map<String, ScoreStats> statsPerMovie = new HashMap<String, ScoreStats>();
+		forEachMovie(false, (productId, stats, users) -> statsPerMovie.put(productId, stats));
+		return MoviesStorage.percentileOf(statsPerMovie, percent);
+	}
+
+	@Override
+	public String mostReviewedProduct() {
+		Map<String, Long> mostReviewed = reviewCountPerMovieTopKMovies(1);
+		return mostReviewed.isEmpty() ? null : mostReviewed.keySet().iterator().next();
+	}
+
+	@Override
+	public Map<String, Long> reviewCountPerMovieTopKMovies(int topK) {
+		final TopK<Map.Entry<String, Long>> top = new TopK<Map.Entry<String, Long>>(topK, (o1, o2) -> {
+			int byCount = o2.getValue().compareTo(o1.getValue());
+			return (byCount != 0) ? byCount : o1.getKey().compareTo(o2.getKey());
+		});
+		forEachMovie(false, (productId, stats, users) ->
+				top.offer(new AbstractMap.SimpleImmutableEntry<String, Long>(productId, stats.getCount())));
+		Map<String, Long> selected = new HashMap<String, Long>();
+		for (Map.Entry<String, Long> entry : top.sorted()) {
+			selected.put(entry.getKey(), entry.getValue());
+		}
+		return MoviesStorage.topKByCount(selected, topK);
+	}
+
+	@Override
+	public String mostPopularMovieReviewedByKUsers(final int numOfUsers) {
+		final TopK<Movie> top = new TopK<Movie>(1, MoviesStorage.AVERAGE_ORDER);
+		forEachMovie(true, (productId, stats, users) -> {
+			// movies are filtered by their distinct reviewers, not by their reviews count
+			if (users.size() >= numOfUsers) {
+				top.offer(new Movie(productId, stats.average()));
+			}
+		});
+		List<Movie> best = top.sorted();
+		return best.isEmpty() ? null : best.get(0).getProductId();
+	}
+
+	@Override
+	public Map<String, Long> moviesReviewWordsCount(int topK) {
+		return aggregation.topKWords(this::allReviews, null, topK);
+	}
+
+	@Override
+	public Map<String, Long> topYMoviewsReviewTopXWordsCount(int topMovies, int topWords) {
+		Map<String, Long> mostReviewedKMovies = reviewCountPerMovieTopKMovies(topMovies);
+		return aggregation.topXWords(this::allReviews, mostReviewedKMovies.keySet(), topWords);
+	}
+
+	@Override
+	public Map<String, Double> topKHelpfullUsers(int k) {
+		return aggregation.topKHelpfulness(this::allReviews, k);
+	}
+
+	@Override
+	public long moviesCount() {
+		final long[] count = new long[1];
+		forEachMovie(false, (productId, stats, users) -> count[0]++);
+		return count[0];
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Segment segment : segments) {
+			segment.close();
+		}
+	}
+
+	/**
+	 * @param fromProductId - first product id, inclusive, null for the first movie
+	 * @param toProductId - last product id, inclusive, null for the last movie
+	 * @return - the segments, in product id order, whose range overlaps the given one
+	 */
+	private List<Segment> segmentsHolding(String fromProductId, String toProductId) {
+		int first = 0;
+		if (disjoint && fromProductId != null) {
+			// first segment which ends at or after the range starts
+			int high = segments.size();
+			while (first < high) {
+				final int mid = (first + high) >>> 1;
+				if (lastProductIds[mid].compareTo(fromProductId) < 0) {
+					first = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+		}
+		List<Segment> holding = new ArrayList<Segment>();
+		for (int i = first; i < segments.size(); i++) {
+			if (firstProductIds[i] == null) {
+				continue;
+			}
+			if (toProductId != null && firstProductIds[i].compareTo(toProductId) > 0) {
+				if (disjoint) {
+					break;
+				}
+				continue;
+			}
+			if (fromProductId == null || lastProductIds[i].compareTo(fromProductId) >= 0) {
+				holding.add(segments.get(i));
+			}
+		}
+		return holding;
+	}
+
+	private interface MovieVisitor {
+		/**
+		 * @param users - distinct users who reviewed the movie, null when not requested
+		 */
+		void visit(String productId, ScoreStats stats, Set<String> users);
+	}
+
+	// Passes every movie once, in product id order, with the aggregates of its reviews of all the segments
+	private void forEachMovie(boolean withUsers, MovieVisitor visitor) {
+		String productId = null;
+		ScoreStats stats = null;
+		Set<String> users = null;
+		// only the product id, score and user id are used
+		Iterator<MovieReview> it = merged();
+		while (it.hasNext()) {
+			MovieReview mr = it.next();
+			if (!mr.getMovie().getProductId().equals(productId)) {
+				if (productId != null) {
+					visitor.visit(productId, stats, users);
+				}
+				productId = mr.getMovie().getProductId();
+				stats = new ScoreStats();
+				users = withUsers ? new HashSet<String>() : null;
+			}
+			stats.add(mr.getMovie().getScore());
+			if (withUsers) {
+				users.add(mr.getUserId());
+			}
+		}
+		if (productId != null) {
+			visitor.visit(productId, stats, users);
+		}
+	}
+
+	// the segments one after the other, for aggregations which don't depend on the order
+	private Iterator<MovieReview> allReviews() {
+		List<Iterator<MovieReview>> reviews = new ArrayList<Iterator<MovieReview>>();
+		for (Segment segment : segments) {
+			reviews.add(segment.iterator());
+		}
+		return concat(reviews);
+	}
+
+	// the keys of all the reviews in product id order, in case of same product id by the segment order
+	private Iterator<MovieReview> merged() {
+		List<Iterator<MovieReview>> sorted = new ArrayList<Iterator<MovieReview>>();
+		for (Segment segment : segments) {
+			sorted.add(segment.keys());
+		}
+		// disjoint segments are in product id order one after the other
+		return disjoint ? concat(sorted) : SegmentWriter.merge(sorted);
+	}
+
+	private static Iterator<MovieReview> concat(List<Iterator<MovieReview>> iterators) {
+		final Iterator<Iterator<MovieReview>> iteratorsIt = iterators.iterator();
+		return new Iterator<MovieReview>() {
+			private Iterator<MovieReview> current = Collections.emptyIterator();
+
+			@Override
+			public boolean hasNext() {
+				while (!current.hasNext() && iteratorsIt.hasNext()) {
+					current = iteratorsIt.next();
+				}
+				return current.hasNext();
+			}
+
+			@Override
+			public MovieReview next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return current.next();
+			}
+		};
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.plan;
+
+import org.junit.Test;
+import univ.bigdata.course.MoviesStorage;
+import univ.bigdata.course.movie.Movie;
+import univ.bigdata.course.movie.MovieReview;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlannedMoviesStorageTest {
+
+	private static MoviesStorage storage(int reviews, int movies, long seed) {
+		final Random random = new Random(seed);
+		final MoviesStorage storage = new MoviesStorage();
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < reviews; i++) {
+			text.setLength(0);
+			for (int word = 0; word < 20; word++) {
+				text.append(" w").append(random.nextInt(2000));
+			}
+			final int votes = random.nextInt(10);
+			storage.addReview(new MovieReview(new Movie("M" + random.nextInt(movies), 1 + random.nextInt(5)),
+					"U" + random.nextInt(reviews / 10), "profile", random.nextInt(votes + 1) + "/" + votes,
+					new Date(0), "summary", text.toString()));
+		}
+		return storage;
+	}
+
+	// shortest of a few runs, in microseconds
+	private static double measure(Runnable run) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			final long start = System.nanoTime();
+			run.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best / 1000.0;
+	}
+
+	private static void runQueries(PlannedMoviesStorage planned) {
+		planned.getTopKMoviesAverage(10);
+		planned.totalMoviesAverageScore();
+		planned.reviewCountPerMovieTopKMovies(10);
+		planned.getMoviesPercentile(90);
+		planned.mostPopularMovieReviewedByKUsers(5);
+		planned.moviesReviewWordsCount(100);
+		planned.topYMoviewsReviewTopXWordsCount(10, 10);
+		planned.topKHelpfullUsers(10);
+		planned.moviesCount();
+	}
+
+	@Test
+	public void choosesThePlanMeasuredCheapest() {
+		final MoviesStorage storage = storage(100000, 1000, 1);
+		storage.scoreColumns();
+		final double scan = measure(storage::scanMovieScoreStats);
+		final double columns = measure(storage::movieScoreStats);
+		final PlannedMoviesStorage planned = new PlannedMoviesStorage(storage);
+		for (int k = 1; k <= 5; k++) {
+			planned.getTopKMoviesAverage(k);
+		}
+		final List<Explain> explains = planned.planner().explains();
+		assertEquals("scan " + scan + "us, columns " + columns + "us",
+				(scan < columns) ? PlanKind.FULL_SCAN : PlanKind.AGGREGATE_INDEX, explains.get(explains.size() - 1).getPlan());
+	}
+
+	@Test
+	public void correctedEstimatesAreCloseToMeasuredCosts() {
+		// compiles the plans first, the estimates are of compiled code
+		for (int i = 0; i < 3; i++) {
+			runQueries(new PlannedMoviesStorage(storage(20000, 200, i)));
+		}
+		final MoviesStorage storage = storage(100000, 1000, 7);
+		final PlannedMoviesStorage planned = new PlannedMoviesStorage(storage);
+		runQueries(planned);
+		final int seeded = planned.planner().explains().size();
+		// a new version of almost the same data, planned with the corrections of the first executions
+		storage.addReview(new MovieReview(new Movie("M0", 5), "U0", "profile", "0/0", new Date(0), "summary", "w0"));
+		runQueries(planned);
+		final List<Explain> explains = planned.planner().explains();
+		for (Explain explain : explains.subList(seeded, explains.size())) {
+			// fixed costs of tiny plans are not estimated
+			if (explain.getActualMicros() < 1000) {
+				continue;
+			}
+			final double ratio = explain.getActualMicros() / explain.getEstimatedMicros();
+			assertTrue(explain.toString(), ratio > 0.1 && ratio < 10);
+		}
+	}
+}
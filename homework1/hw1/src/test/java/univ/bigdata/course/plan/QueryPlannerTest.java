@@ -0,0 +1,70 @@
+/*
+ * Name1; Daphna Kopel id;	209051036
+ * Name2; Tal Hakim id; 	301013439
+ * Name3; Omri Cahen id; 	200736064
+ * Name4; Itay Segev id; 	209146067
+ */
+package univ.bigdata.course.plan;
+
+import org.junit.Test;
+import univ.bigdata.course.cache.ResultCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryPlannerTest {
+
+	// spins for the given time, so the plan costs what it claims regardless of the JIT
+	private static int busy(long micros) {
+		final long end = System.nanoTime() + micros * 1000;
+		int spins = 0;
+		while (System.nanoTime() < end) {
+			spins++;
+		}
+		return spins;
+	}
+
+	private static List<QueryPlan<Integer>> plans(double scanEstimate, long scanActual, double indexEstimate, long indexActual) {
+		return new ArrayList<QueryPlan<Integer>>(Arrays.asList(
+				QueryPlan.exact(PlanKind.FULL_SCAN, scanEstimate, () -> busy(scanActual)),
+				QueryPlan.exact(PlanKind.AGGREGATE_INDEX, indexEstimate, () -> busy(indexActual))));
+	}
+
+	private static PlanKind lastPlan(QueryPlanner planner) {
+		final List<Explain> explains = planner.explains();
+		return explains.get(explains.size() - 1).getPlan();
+	}
+
+	@Test
+	public void choosesTheCheapestEstimate() {
+		final QueryPlanner planner = new QueryPlanner(new ResultCache(), QueryPlanner.DEFAULT_EXPLAIN_HISTORY);
+		planner.execute("query", "1", 0, QueryHint.EXACT, plans(100, 0, 10, 0));
+		assertEquals(PlanKind.AGGREGATE_INDEX, lastPlan(planner));
+	}
+
+	@Test
+	public void firstExecutionReplacesAWrongEstimate() {
+		final QueryPlanner planner = new QueryPlanner(new ResultCache(), QueryPlanner.DEFAULT_EXPLAIN_HISTORY);
+		// the scan claims 1us but takes 20ms, the index claims 100us and takes 2ms
+		planner.execute("query", "1", 0, QueryHint.EXACT, plans(1, 20000, 100, 2000));
+		assertEquals(PlanKind.FULL_SCAN, lastPlan(planner));
+		planner.execute("query", "2", 0, QueryHint.EXACT, plans(1, 20000, 100, 2000));
+		assertEquals(PlanKind.AGGREGATE_INDEX, lastPlan(planner));
+		// both measured now, the index stays the cheaper one
+		planner.execute("query", "3", 0, QueryHint.EXACT, plans(1, 20000, 100, 2000));
+		assertEquals(PlanKind.AGGREGATE_INDEX, lastPlan(planner));
+	}
+
+	@Test
+	public void singleSlowExecutionMovesTheCorrectionOnlySoFar() {
+		final QueryPlanner planner = new QueryPlanner(new ResultCache(), QueryPlanner.DEFAULT_EXPLAIN_HISTORY);
+		// the index is measured as estimated, then takes 100 times longer once
+		planner.execute("query", "1", 0, QueryHint.EXACT, plans(50000, 50000, 1000, 1000));
+		planner.execute("query", "2", 0, QueryHint.EXACT, plans(50000, 50000, 1000, 100000));
+		planner.execute("query", "3", 0, QueryHint.EXACT, plans(50000, 50000, 1000, 1000));
+		assertEquals(PlanKind.AGGREGATE_INDEX, lastPlan(planner));
+	}
+}